@@ -0,0 +1,63 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Binary packets through {@link Parser}, as byte[] and as okio ByteString.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BinaryParserBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private Packet<byte[]> mPacket;
+    private Packet<ByteString> mByteStringPacket;
+    private byte[] mEncoded;
+    private ByteString mEncodedByteString;
+
+    @Setup
+    public void setUp() throws UTF8Exception {
+        byte[] data = Payloads.bytes(size);
+        mPacket = new Packet<>(Packet.MESSAGE, data);
+        mByteStringPacket = new Packet<>(Packet.MESSAGE, ByteString.of(data));
+        mEncoded = Parser.encodePacketBinary(mPacket);
+        mEncodedByteString = ByteString.of(mEncoded);
+    }
+
+    @Benchmark
+    public byte[] encodePacketBinary() throws UTF8Exception {
+        return Parser.encodePacketBinary(mPacket);
+    }
+
+    @Benchmark
+    public ByteString encodePacketBinaryToBuffer() {
+        Buffer sink = new Buffer();
+        Parser.encodePacketBinary(mByteStringPacket, sink);
+        return sink.snapshot();
+    }
+
+    @Benchmark
+    public Packet<byte[]> decodePacketBinary() {
+        return Parser.decodePacket(mEncoded);
+    }
+
+    @Benchmark
+    public Packet<ByteString> decodePacketByteString() {
+        return Parser.decodePacket(mEncodedByteString);
+    }
+}
@@ -0,0 +1,57 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of one decoded packet to the {@link WebSocket.PacketListener}s, without a transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int listeners;
+
+    private WebSocket mSocket;
+    private Packet<String> mPacket;
+    private long mReceived;
+
+    @Setup
+    public void setUp() {
+        Options options = new Options();
+        options.scheme = "http";
+        options.host = "localhost";
+        options.port = 80;
+        options.path = "engine.io/";
+        mSocket = new WebSocket(options);
+        for (int i = 0; i < listeners; i++) {
+            mSocket.addPacketListener(new WebSocket.PacketListener() {
+                @Override
+                public void onPacket(Packet packet) {
+                    mReceived += packet.type;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+            });
+        }
+        mPacket = new Packet<>(Packet.MESSAGE, Payloads.text(Payloads.ASCII, 64));
+    }
+
+    @Benchmark
+    public long dispatch() {
+        mSocket.dispatchPacket(mPacket);
+        return mReceived;
+    }
+}
@@ -0,0 +1,65 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.functions.Action1;
+
+/**
+ * Decoding and routing one socket.io event on a namespace with one subscriber per event name,
+ * for an event somebody listens to and for one nobody does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventRoutingBenchmark {
+
+    @Param({"1", "40"})
+    public int events;
+
+    private Socket mSocket;
+    private String mSubscribed;
+    private String mIgnored;
+    private long mReceived;
+
+    @Setup
+    public void setUp() {
+        Options options = new Options();
+        options.scheme = "http";
+        options.host = "localhost";
+        options.port = 80;
+        options.path = "socket.io/";
+        mSocket = new Manager(new WebSocket(options), options).socket("/");
+        for (int i = 0; i < events; i++) {
+            mSocket.on("event" + i).subscribe(new Action1<Event>() {
+                @Override
+                public void call(Event event) {
+                    mReceived += event.args.length();
+                }
+            });
+        }
+        String args = ",{\"user\":\"someone\",\"text\":\"" + Payloads.text(Payloads.ASCII, 64) + "\"}]";
+        mSubscribed = "2[\"event" + (events - 1) + "\"" + args;
+        mIgnored = "2[\"unknown\"" + args;
+    }
+
+    @Benchmark
+    public long subscribed() {
+        mSocket.onPacket(SocketParser.decode(mSubscribed, true));
+        return mReceived;
+    }
+
+    @Benchmark
+    public long ignored() {
+        mSocket.onPacket(SocketParser.decode(mIgnored, true));
+        return mReceived;
+    }
+}
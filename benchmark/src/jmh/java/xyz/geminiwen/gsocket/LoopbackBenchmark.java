@@ -0,0 +1,132 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import rx.Subscription;
+import rx.functions.Action1;
+
+/**
+ * End-to-end echo over a loopback websocket: send queue, okhttp framing, decode, dispatch and
+ * the shared packet stream. A {@link MockWebServer} plays an engine.io server that echoes
+ * every message.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoopbackBenchmark {
+
+    private static final int WINDOW = 64;
+
+    @Param({"64", "4096"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int subscribers;
+
+    private MockWebServer mServer;
+    private WebSocket mSocket;
+    private final Subscription[] mSubscriptions = new Subscription[4];
+    private final Semaphore mEchoes = new Semaphore(0);
+    private Packet<String> mPacket;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override
+            public void onOpen(okhttp3.WebSocket webSocket, Response response) {
+                webSocket.send("0{\"sid\":\"loopback\",\"upgrades\":[],"
+                        + "\"pingInterval\":25000,\"pingTimeout\":60000}");
+            }
+
+            @Override
+            public void onMessage(okhttp3.WebSocket webSocket, String text) {
+                if (text.equals("2")) {
+                    webSocket.send("3");
+                } else if (text.startsWith("4")) {
+                    webSocket.send(text);
+                }
+            }
+
+            @Override
+            public void onClosing(okhttp3.WebSocket webSocket, int code, String reason) {
+                webSocket.close(code, null);
+            }
+        }));
+        mServer.start();
+
+        Options options = new Options();
+        options.scheme = "http";
+        options.host = mServer.getHostName();
+        options.port = mServer.getPort();
+        options.path = "engine.io/";
+        options.reconnection = false;
+        options.sendQueueCapacity = WINDOW * 4;
+        mSocket = new WebSocket(options);
+
+        for (int i = 0; i < subscribers; i++) {
+            // only the first subscriber counts echoes, the others measure fan-out cost
+            final boolean counting = i == 0;
+            mSubscriptions[i] = mSocket.onPacket().subscribe(new Action1<Packet>() {
+                @Override
+                public void call(Packet packet) {
+                    if (counting) {
+                        mEchoes.release();
+                    }
+                }
+            });
+        }
+        mPacket = new Packet<>(Packet.MESSAGE, Payloads.text(Payloads.MIXED, size));
+
+        // wait for the handshake so the first iteration does not measure it
+        mSocket.send(mPacket);
+        if (!mEchoes.tryAcquire(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("loopback server did not answer");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription != null) {
+                subscription.unsubscribe();
+            }
+        }
+        mSocket.close();
+        mServer.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void roundTrip() throws InterruptedException {
+        mSocket.send(mPacket);
+        mEchoes.acquire();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(WINDOW)
+    public void pipelined() throws InterruptedException {
+        for (int i = 0; i < WINDOW; i++) {
+            mSocket.send(mPacket);
+        }
+        mEchoes.acquire(WINDOW);
+    }
+}
@@ -0,0 +1,29 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-packet {@link Metrics} callback, contended by several reader threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class MetricsBenchmark {
+
+    private final Metrics mMetrics = new Metrics();
+    private final Packet<String> mPacket = new Packet<>(Packet.MESSAGE, "hello");
+
+    @Benchmark
+    public void onPacketReceived() {
+        mMetrics.onPacketReceived(WebSocketTransport.NAME, mPacket, 6, 850);
+    }
+}
@@ -0,0 +1,92 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text packets and payloads through {@link Parser}, across sizes and code point mixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark {
+
+    private static final int PAYLOAD_PACKETS = 16;
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    @Param({Payloads.ASCII, Payloads.LATIN, Payloads.CJK, Payloads.EMOJI, Payloads.MIXED})
+    public String mix;
+
+    private Packet<String> mPacket;
+    private String mEncoded;
+    private String mEncodedUtf8;
+    private Packet[] mPayloadPackets;
+    private String mEncodedPayload;
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    @Setup
+    public void setUp() throws UTF8Exception {
+        mPacket = new Packet<>(Packet.MESSAGE, Payloads.text(mix, size));
+        mEncoded = Parser.encodePacketString(mPacket);
+        mEncodedUtf8 = Parser.encodePacketString(mPacket, true);
+
+        mPayloadPackets = new Packet[PAYLOAD_PACKETS];
+        for (int i = 0; i < PAYLOAD_PACKETS; i++) {
+            mPayloadPackets[i] = new Packet<>(Packet.MESSAGE, Payloads.text(mix, size / PAYLOAD_PACKETS + 1));
+        }
+        mEncodedPayload = Parser.encodePayload(mPayloadPackets, new StringBuilder()).toString();
+    }
+
+    @Benchmark
+    public String encodePacketString() throws UTF8Exception {
+        return Parser.encodePacketString(mPacket);
+    }
+
+    @Benchmark
+    public String encodePacketStringUtf8() throws UTF8Exception {
+        return Parser.encodePacketString(mPacket, true);
+    }
+
+    @Benchmark
+    public StringBuilder encodePacketReusingBuilder() throws UTF8Exception {
+        mBuilder.setLength(0);
+        return Parser.encodePacket(mPacket, mBuilder, false);
+    }
+
+    @Benchmark
+    public Packet<String> decodePacketString() {
+        return Parser.decodePacket(mEncoded);
+    }
+
+    @Benchmark
+    public Packet<String> decodePacketStringUtf8() {
+        return Parser.decodePacket(mEncodedUtf8, true);
+    }
+
+    @Benchmark
+    public Packet<PayloadView> decodePacketView() {
+        return Parser.decodePacketView(mEncoded);
+    }
+
+    @Benchmark
+    public StringBuilder encodePayload() throws UTF8Exception {
+        mBuilder.setLength(0);
+        return Parser.encodePayload(mPayloadPackets, mBuilder);
+    }
+
+    @Benchmark
+    public List<Packet> decodePayload() {
+        return Parser.decodePayload(mEncodedPayload);
+    }
+}
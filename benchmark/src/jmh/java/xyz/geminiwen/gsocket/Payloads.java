@@ -0,0 +1,69 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Text of a given length drawn from one class of code points, so the UTF-8 paths see 1, 2, 3
+ * and 4 byte sequences.
+ */
+final class Payloads {
+
+    static final String ASCII = "ascii";
+    static final String LATIN = "latin";
+    static final String CJK = "cjk";
+    static final String EMOJI = "emoji";
+    static final String MIXED = "mixed";
+
+    private Payloads() {}
+
+    /**
+     * @param length length in chars; an emoji takes two
+     */
+    static String text(String mix, int length) {
+        StringBuilder builder = new StringBuilder(length + 1);
+        int i = 0;
+        while (builder.length() < length) {
+            String kind = MIXED.equals(mix) ? pick(i) : mix;
+            builder.appendCodePoint(codePoint(kind, i));
+            i++;
+        }
+        builder.setLength(length);
+        if (length > 0 && Character.isHighSurrogate(builder.charAt(length - 1))) {
+            // never leave half a pair behind, the strict encoder rejects it
+            builder.setCharAt(length - 1, 'x');
+        }
+        return builder.toString();
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static String pick(int i) {
+        switch (i % 4) {
+            case 0:
+                return ASCII;
+            case 1:
+                return LATIN;
+            case 2:
+                return CJK;
+            default:
+                return EMOJI;
+        }
+    }
+
+    private static int codePoint(String kind, int i) {
+        if (LATIN.equals(kind)) {
+            return 0xc0 + i % 0x40;
+        }
+        if (CJK.equals(kind)) {
+            return 0x4e00 + i % 0x1000;
+        }
+        if (EMOJI.equals(kind)) {
+            return 0x1f600 + i % 0x40;
+        }
+        return 'a' + i % 26;
+    }
+}
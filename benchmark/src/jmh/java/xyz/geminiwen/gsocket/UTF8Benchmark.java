@@ -0,0 +1,82 @@
+package xyz.geminiwen.gsocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UTF8} on strings, reused builders and direct byte buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UTF8Benchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    @Param({Payloads.ASCII, Payloads.LATIN, Payloads.CJK, Payloads.EMOJI, Payloads.MIXED})
+    public String mix;
+
+    private String mText;
+    private String mEncoded;
+    private ByteBuffer mBytes;
+    private ByteBuffer mEncodeTarget;
+    private final StringBuilder mBuilder = new StringBuilder();
+    private final UTF8.Decoder mDecoder = new UTF8.Decoder();
+
+    @Setup
+    public void setUp() throws UTF8Exception {
+        mText = Payloads.text(mix, size);
+        mEncoded = UTF8.encode(mText);
+        mBytes = ByteBuffer.allocate(size * 4);
+        UTF8.encode(mText, mBytes);
+        mBytes.flip();
+        mEncodeTarget = ByteBuffer.allocate(size * 4);
+    }
+
+    @Benchmark
+    public String encode() throws UTF8Exception {
+        return UTF8.encode(mText);
+    }
+
+    @Benchmark
+    public StringBuilder encodeReusingBuilder() throws UTF8Exception {
+        mBuilder.setLength(0);
+        return UTF8.encode(mText, mBuilder);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeToByteBuffer() throws UTF8Exception {
+        mEncodeTarget.clear();
+        UTF8.encode(mText, mEncodeTarget);
+        return mEncodeTarget;
+    }
+
+    @Benchmark
+    public String decode() throws UTF8Exception {
+        return UTF8.decode(mEncoded);
+    }
+
+    @Benchmark
+    public String decodeByteBuffer() throws UTF8Exception {
+        return UTF8.decode(mBytes.duplicate());
+    }
+
+    @Benchmark
+    public StringBuilder decodeIncremental() throws UTF8Exception {
+        mBuilder.setLength(0);
+        mDecoder.reset();
+        mDecoder.decode(mBytes.duplicate(), mBuilder);
+        mDecoder.finish();
+        return mBuilder;
+    }
+}
@@ -0,0 +1,49 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter. Every attempt doubles the base delay up to the maximum, then
+ * moves it by up to {@code jitter} of its value in either direction, so clients dropped by the
+ * same outage do not come back in lockstep, not even once they all reached the maximum.
+ */
+/*package*/ class Backoff {
+
+    private final long mMin;
+    private final long mMax;
+    private final double mJitter;
+    private final Random mRandom = new Random();
+    private int mAttempts;
+    // stops growing once the base delay reaches the maximum, so it never overflows
+    private int mExponent;
+
+    /*package*/ Backoff(long min, long max, double jitter) {
+        mMin = Math.max(min, 0);
+        mMax = Math.max(max, mMin);
+        mJitter = jitter <= 0 ? 0 : Math.min(jitter, 1);
+    }
+
+    /*package*/ synchronized long duration() {
+        mAttempts++;
+        double delay = mMin * Math.pow(2, mExponent);
+        if (delay >= mMax) {
+            delay = mMax;
+        } else if (delay > 0) {
+            mExponent++;
+        }
+        if (mJitter > 0) {
+            double deviation = mRandom.nextDouble() * mJitter * delay;
+            delay = mRandom.nextBoolean() ? delay + deviation : delay - deviation;
+        }
+        return (long) Math.max(delay, 0);
+    }
+
+    /*package*/ synchronized int attempts() {
+        return mAttempts;
+    }
+
+    /*package*/ synchronized void reset() {
+        mAttempts = 0;
+        mExponent = 0;
+    }
+}
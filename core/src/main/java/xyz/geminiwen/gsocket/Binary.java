@@ -0,0 +1,160 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.List;
+
+import okio.ByteString;
+
+/**
+ * Moves binary values of a socket.io packet into separate attachments and back. Binary values
+ * ({@link ByteString} or {@code byte[]}) are replaced by {@code {"_placeholder":true,"num":n}}
+ * in the JSON data and travel as their own engine.io binary frames.
+ */
+/*package*/ final class Binary {
+
+    private static final String KEY_PLACEHOLDER = "_placeholder";
+    private static final String KEY_NUM = "num";
+
+    private Binary() {}
+
+    /*package*/ static boolean hasBinary(Object data) {
+        if (data instanceof ByteString || data instanceof byte[]) {
+            return true;
+        }
+        if (data instanceof JSONArray) {
+            JSONArray array = (JSONArray) data;
+            for (int i = 0; i < array.length(); i++) {
+                if (hasBinary(array.opt(i))) {
+                    return true;
+                }
+            }
+        } else if (data instanceof JSONObject) {
+            JSONObject object = (JSONObject) data;
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                if (hasBinary(object.opt(keys.next()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the binary values of {@code packet} with placeholders, appending them to
+     * {@code attachments} in placeholder order, and turns it into its binary packet type. The
+     * arrays and objects holding binary values are copied, the caller's data is left as is.
+     */
+    /*package*/ static void deconstruct(SocketPacket packet, List<Object> attachments) {
+        packet.data = deconstruct(packet.data, attachments);
+        packet.attachments = attachments.size();
+        if (packet.type == SocketPacket.EVENT) {
+            packet.type = SocketPacket.BINARY_EVENT;
+        } else if (packet.type == SocketPacket.ACK) {
+            packet.type = SocketPacket.BINARY_ACK;
+        }
+    }
+
+    /**
+     * Returns {@code data} itself if it holds no binary values, else a copy with placeholders
+     * that shares the parts without binary values.
+     */
+    private static Object deconstruct(Object data, List<Object> attachments) {
+        try {
+            if (data instanceof ByteString || data instanceof byte[]) {
+                JSONObject placeholder = new JSONObject();
+                placeholder.put(KEY_PLACEHOLDER, true);
+                placeholder.put(KEY_NUM, attachments.size());
+                attachments.add(data);
+                return placeholder;
+            }
+            if (data instanceof JSONArray) {
+                JSONArray array = (JSONArray) data;
+                JSONArray copy = null;
+                for (int i = 0; i < array.length(); i++) {
+                    Object value = array.opt(i);
+                    Object replaced = deconstruct(value, attachments);
+                    if (copy == null && replaced != value) {
+                        copy = new JSONArray();
+                        for (int j = 0; j < i; j++) {
+                            copy.put(array.opt(j));
+                        }
+                    }
+                    if (copy != null) {
+                        copy.put(replaced);
+                    }
+                }
+                return copy != null ? copy : array;
+            }
+            if (data instanceof JSONObject) {
+                JSONObject object = (JSONObject) data;
+                JSONObject copy = null;
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    Object value = object.opt(key);
+                    Object replaced = deconstruct(value, attachments);
+                    if (replaced == value) {
+                        continue;
+                    }
+                    if (copy == null) {
+                        copy = new JSONObject();
+                        Iterator<String> names = object.keys();
+                        while (names.hasNext()) {
+                            String name = names.next();
+                            copy.put(name, object.opt(name));
+                        }
+                    }
+                    copy.put(key, replaced);
+                }
+                return copy != null ? copy : object;
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return data;
+    }
+
+    /**
+     * Puts the received attachments back in place of their placeholders. The ByteStrings are
+     * the frame slices themselves, no bytes are copied.
+     */
+    /*package*/ static void reconstruct(SocketPacket packet, ByteString[] attachments) {
+        packet.data = reconstruct(packet.data, attachments);
+        packet.attachments = 0;
+        if (packet.type == SocketPacket.BINARY_EVENT) {
+            packet.type = SocketPacket.EVENT;
+        } else if (packet.type == SocketPacket.BINARY_ACK) {
+            packet.type = SocketPacket.ACK;
+        }
+    }
+
+    private static Object reconstruct(Object data, ByteString[] attachments) {
+        try {
+            if (data instanceof JSONArray) {
+                JSONArray array = (JSONArray) data;
+                for (int i = 0; i < array.length(); i++) {
+                    array.put(i, reconstruct(array.opt(i), attachments));
+                }
+            } else if (data instanceof JSONObject) {
+                JSONObject object = (JSONObject) data;
+                if (object.optBoolean(KEY_PLACEHOLDER)) {
+                    int num = object.optInt(KEY_NUM, -1);
+                    return num >= 0 && num < attachments.length ? attachments[num] : JSONObject.NULL;
+                }
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    object.put(key, reconstruct(object.opt(key), attachments));
+                }
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,47 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte counts before and after compression, to measure what {@link Options#compression}
+ * saves. "Wire" counts are what went over the network, compressed or not.
+ */
+public final class CompressionStats {
+
+    private final AtomicLong mPayloadBytesSent = new AtomicLong();
+    private final AtomicLong mWireBytesSent = new AtomicLong();
+    private final AtomicLong mPayloadBytesReceived = new AtomicLong();
+    private final AtomicLong mWireBytesReceived = new AtomicLong();
+
+    /*package*/ void onSent(long payloadBytes, long wireBytes) {
+        mPayloadBytesSent.addAndGet(payloadBytes);
+        mWireBytesSent.addAndGet(wireBytes);
+    }
+
+    /*package*/ void onReceived(long payloadBytes, long wireBytes) {
+        mPayloadBytesReceived.addAndGet(payloadBytes);
+        mWireBytesReceived.addAndGet(wireBytes);
+    }
+
+    public long getPayloadBytesSent() {
+        return mPayloadBytesSent.get();
+    }
+
+    public long getWireBytesSent() {
+        return mWireBytesSent.get();
+    }
+
+    public long getPayloadBytesReceived() {
+        return mPayloadBytesReceived.get();
+    }
+
+    public long getWireBytesReceived() {
+        return mWireBytesReceived.get();
+    }
+
+    @Override
+    public String toString() {
+        return "sent " + getPayloadBytesSent() + " -> " + getWireBytesSent()
+                + ", received " + getWireBytesReceived() + " -> " + getPayloadBytesReceived();
+    }
+}
@@ -0,0 +1,130 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * HTTP-level compression for the polling transport. Request bodies at or above the threshold
+ * are deflated with one {@link Deflater} reused for every body; responses are requested with
+ * {@code Accept-Encoding} and inflated here rather than by okhttp, so both sides of the
+ * exchange can be counted in {@link CompressionStats}.
+ */
+/*package*/ final class Compressor {
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final int mThreshold;
+    private final CompressionStats mStats;
+    private Deflater mDeflater;
+
+    /*package*/ Compressor(int threshold, CompressionStats stats) {
+        mThreshold = threshold;
+        mStats = stats;
+    }
+
+    /*package*/ void acceptCompressed(Request.Builder request) {
+        // taking over Accept-Encoding also stops okhttp from inflating transparently
+        request.header("Accept-Encoding", ACCEPT_ENCODING);
+    }
+
+    /**
+     * Deflates {@code payload} into {@code request}'s body if it is large enough to be worth
+     * it; returns the bytes to send.
+     */
+    /*package*/ synchronized ByteString compress(ByteString payload, Request.Builder request) {
+        if (payload.size() < mThreshold) {
+            mStats.onSent(payload.size(), payload.size());
+            return payload;
+        }
+        if (mDeflater == null) {
+            mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        } else {
+            mDeflater.reset();
+        }
+        mDeflater.setInput(payload.toByteArray());
+        mDeflater.finish();
+
+        Buffer compressed = new Buffer();
+        byte[] chunk = new byte[8192];
+        while (!mDeflater.finished()) {
+            int count = mDeflater.deflate(chunk);
+            compressed.write(chunk, 0, count);
+        }
+        if (compressed.size() >= payload.size()) {
+            mStats.onSent(payload.size(), payload.size());
+            return payload;
+        }
+        request.header("Content-Encoding", "deflate");
+        mStats.onSent(payload.size(), compressed.size());
+        return compressed.readByteString();
+    }
+
+    /**
+     * Returns the decoded body of {@code response}, counting wire and payload bytes as they
+     * are read.
+     */
+    /*package*/ BufferedSource decompress(Response response) {
+        final CountingSource wire = new CountingSource(response.body().source());
+        String encoding = response.header("Content-Encoding");
+        Source decoded;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            decoded = new GzipSource(wire);
+        } else if ("deflate".equalsIgnoreCase(encoding)) {
+            decoded = new InflaterSource(wire, new Inflater());
+        } else {
+            decoded = wire;
+        }
+        return Okio.buffer(new ForwardingSource(decoded) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    mStats.onReceived(read, wire.takeCount());
+                }
+                return read;
+            }
+        });
+    }
+
+    /*package*/ synchronized void release() {
+        if (mDeflater != null) {
+            mDeflater.end();
+            mDeflater = null;
+        }
+    }
+
+    private static final class CountingSource extends ForwardingSource {
+        private long mCount;
+
+        CountingSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        long takeCount() {
+            long count = mCount;
+            mCount = 0;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+
+/**
+ * Created by geminiwen on 13/12/2016.
+ *
+ * A socket.io event received on a {@link Socket}.
+ */
+
+public class Event {
+    public final String name;
+    public final JSONArray args;
+
+    private final Socket mSocket;
+    private final int mAckId;
+    private boolean mAcked;
+
+    /*package*/ Event(Socket socket, String name, JSONArray args, int ackId) {
+        this.mSocket = socket;
+        this.name = name;
+        this.args = args;
+        this.mAckId = ackId;
+    }
+
+    /**
+     * Whether the sender is waiting for an acknowledgement.
+     */
+    public boolean needsAck() {
+        return mAckId >= 0;
+    }
+
+    /**
+     * Acknowledges the event with the given arguments. Only the first call is sent.
+     */
+    public synchronized void ack(Object... args) {
+        if (mAckId < 0 || mAcked) {
+            return;
+        }
+        mAcked = true;
+        mSocket.sendAck(mAckId, args);
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " : " + this.args;
+    }
+}
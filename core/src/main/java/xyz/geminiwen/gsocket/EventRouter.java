@@ -0,0 +1,213 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import rx.Subscriber;
+
+/**
+ * Routes events to the subscribers of their name. Exact names are looked up in a hash index;
+ * subscriptions ending in {@code *} are stored in a trie keyed by their prefix, so one walk
+ * along the event name finds all of them. Subscribing copies; routing takes no lock.
+ */
+/*package*/ final class EventRouter {
+
+    private static final Subscriber[] EMPTY = new Subscriber[0];
+
+    private final Object mLock = new Object();
+    // replaced, never mutated, once published
+    private volatile Map<String, Subscriber[]> mExact = new HashMap<>();
+    private final Node mRoot = new Node('\0');
+    private volatile int mPrefixCount;
+
+    /**
+     * Whether routing {@code name} would reach anyone.
+     */
+    /*package*/ boolean hasRoute(String name) {
+        if (mExact.containsKey(name)) {
+            return true;
+        }
+        if (mPrefixCount == 0) {
+            return false;
+        }
+        Node node = mRoot;
+        for (int i = 0; ; i++) {
+            if (node.mSubscribers.length > 0) {
+                return true;
+            }
+            if (i == name.length() || (node = node.child(name.charAt(i))) == null) {
+                return false;
+            }
+        }
+    }
+
+    /*package*/ void route(Event event) {
+        String name = event.name;
+        Subscriber[] exact = mExact.get(name);
+        if (exact != null) {
+            deliver(exact, event);
+        }
+        if (mPrefixCount == 0) {
+            return;
+        }
+        Node node = mRoot;
+        for (int i = 0; node != null; i++) {
+            deliver(node.mSubscribers, event);
+            node = i < name.length() ? node.child(name.charAt(i)) : null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void deliver(Subscriber[] subscribers, Event event) {
+        for (Subscriber subscriber : subscribers) {
+            // a snapshot may still hold a subscriber that has just left
+            if (!subscriber.isUnsubscribed()) {
+                subscriber.onNext(event);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to {@code pattern}: an event name, or a prefix followed by {@code *}.
+     */
+    /*package*/ void add(String pattern, Subscriber<? super Event> subscriber) {
+        synchronized (mLock) {
+            if (isPrefix(pattern)) {
+                Node node = mRoot;
+                for (int i = 0; i < pattern.length() - 1; i++) {
+                    node = node.childOrCreate(pattern.charAt(i));
+                }
+                node.mSubscribers = append(node.mSubscribers, subscriber);
+                mPrefixCount++;
+                return;
+            }
+            Map<String, Subscriber[]> exact = new HashMap<>(mExact);
+            Subscriber[] current = exact.get(pattern);
+            exact.put(pattern, append(current == null ? EMPTY : current, subscriber));
+            mExact = exact;
+        }
+    }
+
+    /*package*/ void remove(String pattern, Subscriber<? super Event> subscriber) {
+        synchronized (mLock) {
+            if (isPrefix(pattern)) {
+                removePrefix(pattern, subscriber);
+                return;
+            }
+            Subscriber[] current = mExact.get(pattern);
+            if (current == null) {
+                return;
+            }
+            Subscriber[] remaining = without(current, subscriber);
+            if (remaining == current) {
+                return;
+            }
+            Map<String, Subscriber[]> exact = new HashMap<>(mExact);
+            if (remaining.length == 0) {
+                exact.remove(pattern);
+            } else {
+                exact.put(pattern, remaining);
+            }
+            mExact = exact;
+        }
+    }
+
+    private void removePrefix(String pattern, Subscriber<? super Event> subscriber) {
+        int depth = pattern.length() - 1;
+        Node[] path = new Node[depth + 1];
+        path[0] = mRoot;
+        for (int i = 0; i < depth; i++) {
+            path[i + 1] = path[i].child(pattern.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = path[depth];
+        Subscriber[] remaining = without(node.mSubscribers, subscriber);
+        if (remaining == node.mSubscribers) {
+            return;
+        }
+        node.mSubscribers = remaining;
+        mPrefixCount--;
+        // prune the branch back up to the first node still in use
+        for (int i = depth; i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].removeChild(path[i]);
+        }
+    }
+
+    private static boolean isPrefix(String pattern) {
+        return pattern.endsWith("*");
+    }
+
+    private static Subscriber[] append(Subscriber[] array, Subscriber subscriber) {
+        Subscriber[] copy = new Subscriber[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        copy[array.length] = subscriber;
+        return copy;
+    }
+
+    private static Subscriber[] without(Subscriber[] array, Subscriber subscriber) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == subscriber) {
+                Subscriber[] copy = new Subscriber[array.length - 1];
+                System.arraycopy(array, 0, copy, 0, i);
+                System.arraycopy(array, i + 1, copy, i, array.length - i - 1);
+                return copy;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * A trie node. Children and subscribers are copy-on-write arrays written under the router
+     * lock, so readers walking the trie always see a consistent node.
+     */
+    private static final class Node {
+        final char mKey;
+        volatile Node[] mChildren = new Node[0];
+        volatile Subscriber[] mSubscribers = EMPTY;
+
+        Node(char key) {
+            mKey = key;
+        }
+
+        Node child(char key) {
+            for (Node child : mChildren) {
+                if (child.mKey == key) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node childOrCreate(char key) {
+            Node child = child(key);
+            if (child == null) {
+                child = new Node(key);
+                Node[] children = mChildren;
+                Node[] copy = new Node[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, children.length);
+                copy[children.length] = child;
+                mChildren = copy;
+            }
+            return child;
+        }
+
+        void removeChild(Node child) {
+            Node[] children = mChildren;
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    Node[] copy = new Node[children.length - 1];
+                    System.arraycopy(children, 0, copy, 0, i);
+                    System.arraycopy(children, i + 1, copy, i, children.length - i - 1);
+                    mChildren = copy;
+                    return;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return mSubscribers.length == 0 && mChildren.length == 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Entry point that shares connections: one {@link Manager}, and so one engine.io connection,
+ * per endpoint, and one {@link OkHttpClient} for every endpoint that does not bring its own.
+ */
+public final class IO {
+
+    private static final ConcurrentMap<String, Manager> sManagers = new ConcurrentHashMap<>();
+
+    private IO() {}
+
+    private static class ClientHolder {
+        // one connection pool, dispatcher and TLS session cache for the whole process
+        static final OkHttpClient sClient = new OkHttpClient.Builder()
+                .connectTimeout(0, TimeUnit.MILLISECONDS)
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .writeTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private static class DecodeHolder {
+        static final ExecutorService sExecutor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "gsocket-decode-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * A pool with one thread per core, for {@link Options#decodeExecutor}. Any number of
+     * sockets can share it.
+     */
+    public static Executor decodeExecutor() {
+        return DecodeHolder.sExecutor;
+    }
+
+    /**
+     * An executor starting a virtual thread per task, for {@link Options#decodeExecutor}, or
+     * null if this JVM has no virtual threads. Looked up reflectively, this library targets
+     * Java 7 and Android.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The client used by every {@link WebSocket} whose {@link Options#httpClient} is null.
+     * Derive custom clients from it with {@code newBuilder()} to keep sharing its pool.
+     */
+    public static OkHttpClient defaultHttpClient() {
+        return ClientHolder.sClient;
+    }
+
+    /**
+     * Returns the manager for the endpoint described by {@code opts}, creating it on first use.
+     * Later calls for the same scheme, host, port and path return the same manager and ignore
+     * the rest of their options.
+     */
+    public static Manager manager(Options opts) {
+        String key = key(opts);
+        Manager manager = sManagers.get(key);
+        if (manager != null) {
+            return manager;
+        }
+        // a Manager that lost a race would leak its WebSocket and journal mapping
+        synchronized (sManagers) {
+            manager = sManagers.get(key);
+            if (manager == null) {
+                manager = new Manager(opts);
+                sManagers.put(key, manager);
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Returns the socket for {@code namespace} on the shared connection to the endpoint.
+     */
+    public static Socket socket(Options opts, String namespace) {
+        return manager(opts).socket(namespace);
+    }
+
+    /**
+     * Drops the cached manager of the endpoint, closing its connection.
+     */
+    public static void release(Options opts) {
+        Manager manager = sManagers.remove(key(opts));
+        if (manager != null) {
+            manager.engine().close();
+        }
+    }
+
+    private static String key(Options opts) {
+        String path = opts.path == null ? "" : opts.path;
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        return opts.scheme + "://" + opts.host + ":" + opts.port + path;
+    }
+}
@@ -0,0 +1,138 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Open-addressing map from primitive int keys to non-null values, so lookups on hot paths
+ * do not box their keys. Not thread-safe.
+ */
+/*package*/ final class IntObjectMap<V> {
+
+    private int[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+
+    /*package*/ IntObjectMap() {
+        this(16);
+    }
+
+    /*package*/ IntObjectMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new int[capacity];
+        mValues = new Object[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    /*package*/ V get(int key) {
+        int mask = mKeys.length - 1;
+        for (int i = hash(key) & mask; mValues[i] != null; i = (i + 1) & mask) {
+            if (mKeys[i] == key) {
+                return (V) mValues[i];
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    /*package*/ V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+        if ((mSize + 1) * 2 > mKeys.length) {
+            resize(mKeys.length << 1);
+        }
+        int mask = mKeys.length - 1;
+        int i = hash(key) & mask;
+        for (; mValues[i] != null; i = (i + 1) & mask) {
+            if (mKeys[i] == key) {
+                V previous = (V) mValues[i];
+                mValues[i] = value;
+                return previous;
+            }
+        }
+        mKeys[i] = key;
+        mValues[i] = value;
+        mSize++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    /*package*/ V remove(int key) {
+        int mask = mKeys.length - 1;
+        int i = hash(key) & mask;
+        for (; mValues[i] != null; i = (i + 1) & mask) {
+            if (mKeys[i] == key) {
+                V previous = (V) mValues[i];
+                shiftBack(i);
+                mSize--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    /*package*/ int size() {
+        return mSize;
+    }
+
+    /**
+     * Removes every entry and returns the values, for failing whatever is still pending.
+     */
+    /*package*/ Object[] clear() {
+        Object[] values = new Object[mSize];
+        int index = 0;
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                values[index++] = mValues[i];
+                mValues[i] = null;
+            }
+        }
+        mSize = 0;
+        return values;
+    }
+
+    // backward-shift deletion keeps probe chains intact without tombstones
+    private void shiftBack(int hole) {
+        int mask = mKeys.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (mValues[i] == null) {
+                break;
+            }
+            int home = hash(mKeys[i]) & mask;
+            boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                mKeys[hole] = mKeys[i];
+                mValues[hole] = mValues[i];
+                hole = i;
+            }
+        }
+        mValues[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] keys = mKeys;
+        Object[] values = mValues;
+        mKeys = new int[capacity];
+        mValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < keys.length; j++) {
+            if (values[j] == null) {
+                continue;
+            }
+            int i = hash(keys[j]) & mask;
+            while (mValues[i] != null) {
+                i = (i + 1) & mask;
+            }
+            mKeys[i] = keys[j];
+            mValues[i] = values[j];
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,98 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.Collection;
+import java.util.Map;
+
+import okio.ByteString;
+
+/**
+ * JSON text frames through org.json. Decodes to JSONObject, JSONArray, String, Number,
+ * Boolean or {@link JSONObject#NULL}.
+ */
+public class JsonSerializer implements Serializer<Object> {
+
+    public static final JsonSerializer INSTANCE = new JsonSerializer();
+
+    private static final int MAX_DEPTH = 256;
+
+    @Override
+    public Object encode(Object value) {
+        try {
+            return toJson(value);
+        } catch (JSONException e) {
+            throw new EngineIOException("cannot encode " + value, e);
+        }
+    }
+
+    @Override
+    public Object decode(Object payload) {
+        String text;
+        if (payload instanceof String) {
+            text = (String) payload;
+        } else if (payload instanceof ByteString) {
+            text = ((ByteString) payload).utf8();
+        } else {
+            throw new EngineIOException("unexpected payload " + payload);
+        }
+        checkDepth(text);
+        try {
+            return new JSONTokener(text).nextValue();
+        } catch (JSONException e) {
+            throw new EngineIOException("malformed json", e);
+        }
+    }
+
+    /**
+     * Rejects arrays and objects nested deeper than {@value #MAX_DEPTH} levels before org.json
+     * recurses into them, the same limit as {@link StreamingJsonSerializer}.
+     */
+    private static void checkDepth(String text) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                if (++depth > MAX_DEPTH + 1) {
+                    throw new EngineIOException("json nested too deeply");
+                }
+            } else if (c == ']' || c == '}') {
+                depth--;
+            }
+        }
+    }
+
+    /*package*/ static String toJson(Object value) throws JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return JSONObject.quote((String) value);
+        }
+        if (value instanceof Number) {
+            return JSONObject.numberToString((Number) value);
+        }
+        if (value instanceof Boolean || value instanceof JSONObject || value instanceof JSONArray) {
+            return value.toString();
+        }
+        if (value instanceof Map) {
+            return new JSONObject((Map) value).toString();
+        }
+        if (value instanceof Collection) {
+            return new JSONArray((Collection) value).toString();
+        }
+        throw new JSONException("unsupported type " + value.getClass().getName());
+    }
+}
@@ -0,0 +1,14 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Picks the key updates conflate under: a newer packet replaces an older one with the same key
+ * that is still waiting to be sent or delivered; see {@link Options#conflationKeyExtractor}.
+ * Called for every MESSAGE packet, on the sending or the reader thread.
+ */
+public interface KeyExtractor {
+
+    /**
+     * @return the packet's key, or null if it must never be replaced
+     */
+    Object keyOf(Packet packet);
+}
@@ -0,0 +1,101 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free log-linear histogram in the style of HdrHistogram: every power of two is split
+ * into {@value #SUB_BUCKETS} linear buckets, so recorded values keep about 12% precision from
+ * 0 up to {@link Long#MAX_VALUE} in under 500 counters.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final StripedCounter mCount = new StripedCounter();
+    private final StripedCounter mSum = new StripedCounter();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a value; negative values are ignored.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        mCounts.getAndIncrement(bucket(value));
+        mCount.increment();
+        mSum.add(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public long count() {
+        return mCount.sum();
+    }
+
+    public long max() {
+        return mMax.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) mSum.sum() / count;
+    }
+
+    /**
+     * The value at or below which {@code percentile} percent of recorded values fall, rounded
+     * up to its bucket's upper bound; 0 when nothing was recorded.
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + " mean=" + (long) mean() + " p50=" + percentile(50)
+                + " p99=" + percentile(99) + " max=" + max();
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okio.ByteString;
+
+/**
+ * Multiplexes socket.io namespaces over one engine.io {@link WebSocket}. Each namespace gets
+ * one {@link Socket}; incoming packets are decoded once and routed by namespace. Event
+ * arguments are only decoded if the namespace has a subscriber for the event.
+ */
+public class Manager {
+
+    private final WebSocket mEngine;
+    private final Options mOptions;
+    private final ConcurrentMap<String, Socket> mSockets = new ConcurrentHashMap<>();
+    private boolean mListening;
+
+    // binary packet waiting for its attachments; only touched from the engine's reader
+    private SocketPacket mPendingBinary;
+    private ByteString[] mPendingAttachments;
+    private int mPendingCount;
+    private long mPendingBytes;
+
+    public Manager(Options opts) {
+        this(new WebSocket(opts), opts);
+    }
+
+    /*package*/ Manager(WebSocket engine, Options opts) {
+        mEngine = engine;
+        mOptions = opts;
+        // the server joins the root namespace on every handshake, so it must always be routable
+        mSockets.put("/", new Socket(this, "/", opts.ackTimeout));
+    }
+
+    /**
+     * Returns the socket for {@code namespace}, creating it on first use. Call
+     * {@link Socket#connect()} to join the namespace.
+     */
+    public Socket socket(String namespace) {
+        if (!namespace.startsWith("/")) {
+            namespace = "/" + namespace;
+        }
+        Socket socket = mSockets.get(namespace);
+        if (socket == null) {
+            Socket created = new Socket(this, namespace, mOptions.ackTimeout);
+            socket = mSockets.putIfAbsent(namespace, created);
+            if (socket == null) {
+                socket = created;
+            }
+        }
+        return socket;
+    }
+
+    public WebSocket engine() {
+        return mEngine;
+    }
+
+    /*package*/ void open(Socket socket) {
+        synchronized (this) {
+            if (!mListening) {
+                mListening = true;
+                mEngine.addPacketListener(mPacketListener);
+            }
+        }
+        if (mEngine.isOpen()) {
+            // the engine will not send another OPEN for this namespace
+            socket.onOpen();
+        }
+        mEngine.open();
+    }
+
+    /*package*/ void remove(Socket socket) {
+        if (!"/".equals(socket.namespace())) {
+            mSockets.remove(socket.namespace(), socket);
+        }
+        synchronized (this) {
+            for (Socket s : mSockets.values()) {
+                if (s.isActive()) {
+                    return;
+                }
+            }
+            if (mListening) {
+                mListening = false;
+                mEngine.removePacketListener(mPacketListener);
+                mEngine.close();
+            }
+        }
+    }
+
+    /*package*/ void send(SocketPacket packet) {
+        if (!Binary.hasBinary(packet.data)) {
+            mEngine.send(new Packet<>(Packet.MESSAGE, SocketParser.encode(packet)));
+            return;
+        }
+
+        List<Object> attachments = new ArrayList<>();
+        Binary.deconstruct(packet, attachments);
+        // one send() call keeps the header and its attachments together in the queue
+        Packet[] packets = new Packet[1 + attachments.size()];
+        packets[0] = new Packet<>(Packet.MESSAGE, SocketParser.encode(packet));
+        for (int i = 0; i < attachments.size(); i++) {
+            packets[i + 1] = new Packet<>(Packet.MESSAGE, attachments.get(i));
+        }
+        mEngine.send(packets);
+    }
+
+    private void onSocketPacket(SocketPacket packet) {
+        if (mPendingBinary != null) {
+            // a text packet in the middle of attachments means the sequence was broken
+            resetPendingBinary();
+        }
+        boolean binary = packet.type == SocketPacket.BINARY_EVENT || packet.type == SocketPacket.BINARY_ACK;
+        if (binary && packet.attachments > 0) {
+            if (packet.attachments > mOptions.maxAttachments) {
+                mEngine.onError("Too Many Attachments",
+                        new EngineIOException("packet has " + packet.attachments + " attachments"));
+                return;
+            }
+            mPendingBinary = packet;
+            mPendingAttachments = new ByteString[packet.attachments];
+            return;
+        }
+        if (binary) {
+            Binary.reconstruct(packet, new ByteString[0]);
+        }
+        route(packet);
+    }
+
+    private void onAttachment(ByteString attachment) {
+        if (mPendingBinary == null) {
+            return;
+        }
+        mPendingBytes += attachment.size();
+        if (mPendingBytes > mOptions.maxAttachmentBytes) {
+            resetPendingBinary();
+            mEngine.onError("Attachments Too Large",
+                    new EngineIOException("attachments exceed " + mOptions.maxAttachmentBytes + " bytes"));
+            return;
+        }
+        mPendingAttachments[mPendingCount++] = attachment;
+        if (mPendingCount == mPendingAttachments.length) {
+            SocketPacket packet = mPendingBinary;
+            Binary.reconstruct(packet, mPendingAttachments);
+            resetPendingBinary();
+            route(packet);
+        }
+    }
+
+    private void resetPendingBinary() {
+        mPendingBinary = null;
+        mPendingAttachments = null;
+        mPendingCount = 0;
+        mPendingBytes = 0;
+    }
+
+    private void route(SocketPacket packet) {
+        Socket socket = mSockets.get(packet.nsp);
+        if (socket != null) {
+            socket.onPacket(packet);
+        }
+    }
+
+    private final WebSocket.PacketListener mPacketListener = new WebSocket.PacketListener() {
+        @Override
+        public void onPacket(Packet packet) {
+            switch (packet.type) {
+                case Packet.OPEN:
+                    for (Socket socket : mSockets.values()) {
+                        socket.onOpen();
+                    }
+                    break;
+                case Packet.CLOSE:
+                    resetPendingBinary();
+                    for (Socket socket : mSockets.values()) {
+                        socket.onDisconnect(new EngineIOException("transport close"));
+                    }
+                    break;
+                case Packet.MESSAGE:
+                    if (packet.data instanceof String) {
+                        onSocketPacket(SocketParser.decode((String) packet.data, true));
+                    } else if (packet.data instanceof ByteString) {
+                        onAttachment((ByteString) packet.data);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            for (Socket socket : mSockets.values()) {
+                socket.onDisconnect(t);
+            }
+        }
+    };
+}
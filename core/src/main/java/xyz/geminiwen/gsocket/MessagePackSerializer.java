@@ -0,0 +1,295 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * MessagePack in binary frames. Decodes to null, Boolean, Integer or Long, Float or Double,
+ * String, ByteString (bin), List and Map; extension types are rejected. Encodes those types
+ * plus byte[], JSONObject and JSONArray. The server has to speak MessagePack as well.
+ */
+public class MessagePackSerializer implements Serializer<Object> {
+
+    public static final MessagePackSerializer INSTANCE = new MessagePackSerializer();
+
+    private static final int MAX_PRESIZE = 1024;
+    private static final int MAX_DEPTH = 256;
+
+    @Override
+    public Object encode(Object value) {
+        Buffer sink = new Buffer();
+        write(value, sink);
+        return sink.readByteString();
+    }
+
+    @Override
+    public Object decode(Object payload) {
+        Buffer buffer = new Buffer();
+        if (payload instanceof ByteString) {
+            buffer.write((ByteString) payload);
+        } else if (payload instanceof byte[]) {
+            buffer.write((byte[]) payload);
+        } else {
+            throw new EngineIOException("messagepack needs a binary payload");
+        }
+        // unlike Buffer, a buffered source reports running out of bytes as EOFException
+        BufferedSource source = Okio.buffer((Source) buffer);
+        try {
+            Object value = read(source, 0);
+            if (!source.exhausted()) {
+                throw new EngineIOException("trailing bytes after messagepack value");
+            }
+            return value;
+        } catch (IOException e) {
+            throw new EngineIOException("truncated messagepack value", e);
+        }
+    }
+
+    private static void write(Object value, Buffer sink) {
+        if (value == null || value == JSONObject.NULL) {
+            sink.writeByte(0xc0);
+        } else if (value instanceof Boolean) {
+            sink.writeByte((Boolean) value ? 0xc3 : 0xc2);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue(), sink);
+        } else if (value instanceof Float) {
+            sink.writeByte(0xca).writeInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Number) {
+            sink.writeByte(0xcb).writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof String) {
+            writeString((String) value, sink);
+        } else if (value instanceof ByteString) {
+            ByteString bytes = (ByteString) value;
+            writeHeader(bytes.size(), 0xc4, 0xc5, 0xc6, sink);
+            sink.write(bytes);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            writeHeader(bytes.length, 0xc4, 0xc5, 0xc6, sink);
+            sink.write(bytes);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeMapHeader(map.size(), sink);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(entry.getKey(), sink);
+                write(entry.getValue(), sink);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            writeArrayHeader(list.size(), sink);
+            for (Object item : list) {
+                write(item, sink);
+            }
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            writeMapHeader(object.length(), sink);
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                writeString(key, sink);
+                write(object.opt(key), sink);
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            writeArrayHeader(array.length(), sink);
+            for (int i = 0; i < array.length(); i++) {
+                write(array.opt(i), sink);
+            }
+        } else {
+            throw new EngineIOException("cannot encode " + value.getClass().getName());
+        }
+    }
+
+    private static void writeLong(long v, Buffer sink) {
+        if (v >= 0) {
+            if (v < 0x80) {
+                sink.writeByte((int) v);
+            } else if (v <= 0xff) {
+                sink.writeByte(0xcc).writeByte((int) v);
+            } else if (v <= 0xffff) {
+                sink.writeByte(0xcd).writeShort((int) v);
+            } else if (v <= 0xffffffffL) {
+                sink.writeByte(0xce).writeInt((int) v);
+            } else {
+                sink.writeByte(0xcf).writeLong(v);
+            }
+        } else {
+            if (v >= -32) {
+                sink.writeByte((int) v);
+            } else if (v >= Byte.MIN_VALUE) {
+                sink.writeByte(0xd0).writeByte((int) v);
+            } else if (v >= Short.MIN_VALUE) {
+                sink.writeByte(0xd1).writeShort((int) v);
+            } else if (v >= Integer.MIN_VALUE) {
+                sink.writeByte(0xd2).writeInt((int) v);
+            } else {
+                sink.writeByte(0xd3).writeLong(v);
+            }
+        }
+    }
+
+    private static void writeString(String value, Buffer sink) {
+        ByteString utf8 = ByteString.encodeUtf8(value);
+        if (utf8.size() < 32) {
+            sink.writeByte(0xa0 | utf8.size());
+        } else {
+            writeHeader(utf8.size(), 0xd9, 0xda, 0xdb, sink);
+        }
+        sink.write(utf8);
+    }
+
+    private static void writeArrayHeader(int size, Buffer sink) {
+        if (size < 16) {
+            sink.writeByte(0x90 | size);
+        } else {
+            writeHeader(size, -1, 0xdc, 0xdd, sink);
+        }
+    }
+
+    private static void writeMapHeader(int size, Buffer sink) {
+        if (size < 16) {
+            sink.writeByte(0x80 | size);
+        } else {
+            writeHeader(size, -1, 0xde, 0xdf, sink);
+        }
+    }
+
+    /**
+     * Writes the 8, 16 or 32 bit length form; {@code code8} is -1 for types without one.
+     */
+    private static void writeHeader(int size, int code8, int code16, int code32, Buffer sink) {
+        if (code8 != -1 && size <= 0xff) {
+            sink.writeByte(code8).writeByte(size);
+        } else if (size <= 0xffff) {
+            sink.writeByte(code16).writeShort(size);
+        } else {
+            sink.writeByte(code32).writeInt(size);
+        }
+    }
+
+    private static Object read(BufferedSource source, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            // a few bytes of nested headers would otherwise overflow the decoding thread's stack
+            throw new EngineIOException("messagepack nested too deeply");
+        }
+        int b = source.readByte() & 0xff;
+        if (b <= 0x7f) {
+            return b;
+        }
+        if (b >= 0xe0) {
+            return (int) (byte) b;
+        }
+        if ((b & 0xf0) == 0x80) {
+            return readMap(b & 0x0f, source, depth);
+        }
+        if ((b & 0xf0) == 0x90) {
+            return readArray(b & 0x0f, source, depth);
+        }
+        if ((b & 0xe0) == 0xa0) {
+            return source.readUtf8(b & 0x1f);
+        }
+        switch (b) {
+            case 0xc0:
+                return null;
+            case 0xc2:
+                return Boolean.FALSE;
+            case 0xc3:
+                return Boolean.TRUE;
+            case 0xc4:
+                return source.readByteString(source.readByte() & 0xff);
+            case 0xc5:
+                return source.readByteString(source.readShort() & 0xffff);
+            case 0xc6:
+                return source.readByteString(length(source.readInt()));
+            case 0xca:
+                return Float.intBitsToFloat(source.readInt());
+            case 0xcb:
+                return Double.longBitsToDouble(source.readLong());
+            case 0xcc:
+                return source.readByte() & 0xff;
+            case 0xcd:
+                return source.readShort() & 0xffff;
+            case 0xce:
+                return narrow(source.readInt() & 0xffffffffL);
+            case 0xcf: {
+                long v = source.readLong();
+                if (v < 0) {
+                    throw new EngineIOException("uint64 out of range");
+                }
+                return narrow(v);
+            }
+            case 0xd0:
+                return (int) source.readByte();
+            case 0xd1:
+                return (int) source.readShort();
+            case 0xd2:
+                return source.readInt();
+            case 0xd3:
+                return narrow(source.readLong());
+            case 0xd9:
+                return source.readUtf8(source.readByte() & 0xff);
+            case 0xda:
+                return source.readUtf8(source.readShort() & 0xffff);
+            case 0xdb:
+                return source.readUtf8(length(source.readInt()));
+            case 0xdc:
+                return readArray(source.readShort() & 0xffff, source, depth);
+            case 0xdd:
+                return readArray(length(source.readInt()), source, depth);
+            case 0xde:
+                return readMap(source.readShort() & 0xffff, source, depth);
+            case 0xdf:
+                return readMap(length(source.readInt()), source, depth);
+            default:
+                throw new EngineIOException("unsupported messagepack type 0x" + Integer.toHexString(b));
+        }
+    }
+
+    private static List<Object> readArray(int size, BufferedSource source, int depth)
+            throws IOException {
+        // a forged size runs out of bytes before it can over-allocate
+        List<Object> list = new ArrayList<>(Math.min(size, MAX_PRESIZE));
+        for (int i = 0; i < size; i++) {
+            list.add(read(source, depth + 1));
+        }
+        return list;
+    }
+
+    private static Map<Object, Object> readMap(int size, BufferedSource source, int depth)
+            throws IOException {
+        Map<Object, Object> map = new LinkedHashMap<>(Math.min(size, MAX_PRESIZE));
+        for (int i = 0; i < size; i++) {
+            Object key = read(source, depth + 1);
+            map.put(key, read(source, depth + 1));
+        }
+        return map;
+    }
+
+    private static int length(int raw) {
+        if (raw < 0) {
+            throw new EngineIOException("messagepack length out of range");
+        }
+        return raw;
+    }
+
+    private static Object narrow(long v) {
+        if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+            return (int) v;
+        }
+        return v;
+    }
+}
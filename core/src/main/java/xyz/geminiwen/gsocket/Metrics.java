@@ -0,0 +1,152 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsListener} that aggregates a connection's activity into counters and
+ * latency histograms, cheap enough to leave on. Totals only ever grow; take two readings to
+ * get rates.
+ */
+public class Metrics implements MetricsListener {
+
+    private final StripedCounter mPacketsSent = new StripedCounter();
+    private final StripedCounter mPacketsReceived = new StripedCounter();
+    private final StripedCounter mMessagesSent = new StripedCounter();
+    private final StripedCounter mMessagesReceived = new StripedCounter();
+    private final StripedCounter mBytesSent = new StripedCounter();
+    private final StripedCounter mBytesReceived = new StripedCounter();
+    private final StripedCounter mOpens = new StripedCounter();
+    private final StripedCounter mReconnects = new StripedCounter();
+    private final StripedCounter mErrors = new StripedCounter();
+
+    private final LatencyHistogram mEncodeNanos = new LatencyHistogram();
+    private final LatencyHistogram mDecodeNanos = new LatencyHistogram();
+    private final LatencyHistogram mPingRtt = new LatencyHistogram();
+
+    private volatile int mQueuedPackets;
+    private volatile long mTransportQueueBytes;
+    private final AtomicLong mMaxTransportQueueBytes = new AtomicLong();
+
+    @Override
+    public void onPacketSent(String transport, Packet packet, long bytes, long encodeNanos) {
+        mPacketsSent.increment();
+        if (packet.type == Packet.MESSAGE) {
+            mMessagesSent.increment();
+        }
+        mBytesSent.add(bytes);
+        mEncodeNanos.record(encodeNanos);
+    }
+
+    @Override
+    public void onPacketReceived(String transport, Packet packet, long bytes, long decodeNanos) {
+        mPacketsReceived.increment();
+        if (packet.type == Packet.MESSAGE) {
+            mMessagesReceived.increment();
+        }
+        mBytesReceived.add(bytes);
+        mDecodeNanos.record(decodeNanos);
+    }
+
+    @Override
+    public void onQueueSize(int queuedPackets, long transportBytes) {
+        mQueuedPackets = queuedPackets;
+        mTransportQueueBytes = transportBytes;
+        long max = mMaxTransportQueueBytes.get();
+        while (transportBytes > max && !mMaxTransportQueueBytes.compareAndSet(max, transportBytes)) {
+            max = mMaxTransportQueueBytes.get();
+        }
+    }
+
+    @Override
+    public void onTransportOpen(String transport) {
+        mOpens.increment();
+    }
+
+    @Override
+    public void onTransportClose(String transport, Throwable error) {
+    }
+
+    @Override
+    public void onReconnectScheduled(int attempt, long delayMillis) {
+        mReconnects.increment();
+    }
+
+    @Override
+    public void onPingRtt(long rttMillis) {
+        mPingRtt.record(rttMillis);
+    }
+
+    @Override
+    public void onError(String message, Throwable t) {
+        mErrors.increment();
+    }
+
+    public long getPacketsSent() {
+        return mPacketsSent.sum();
+    }
+
+    public long getPacketsReceived() {
+        return mPacketsReceived.sum();
+    }
+
+    public long getMessagesSent() {
+        return mMessagesSent.sum();
+    }
+
+    public long getMessagesReceived() {
+        return mMessagesReceived.sum();
+    }
+
+    public long getBytesSent() {
+        return mBytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return mBytesReceived.sum();
+    }
+
+    public long getTransportOpens() {
+        return mOpens.sum();
+    }
+
+    public long getReconnects() {
+        return mReconnects.sum();
+    }
+
+    public long getErrors() {
+        return mErrors.sum();
+    }
+
+    public int getQueuedPackets() {
+        return mQueuedPackets;
+    }
+
+    public long getTransportQueueBytes() {
+        return mTransportQueueBytes;
+    }
+
+    public long getMaxTransportQueueBytes() {
+        return mMaxTransportQueueBytes.get();
+    }
+
+    public LatencyHistogram getEncodeNanos() {
+        return mEncodeNanos;
+    }
+
+    public LatencyHistogram getDecodeNanos() {
+        return mDecodeNanos;
+    }
+
+    public LatencyHistogram getPingRttMillis() {
+        return mPingRtt;
+    }
+
+    @Override
+    public String toString() {
+        return "sent " + getPacketsSent() + " packets/" + getBytesSent() + " bytes"
+                + ", received " + getPacketsReceived() + " packets/" + getBytesReceived() + " bytes"
+                + ", reconnects " + getReconnects() + ", errors " + getErrors()
+                + ", encode ns [" + mEncodeNanos + "], decode ns [" + mDecodeNanos + "]"
+                + ", ping ms [" + mPingRtt + "]";
+    }
+}
@@ -0,0 +1,44 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Receives instrumentation events from a {@link WebSocket}, see {@link Options#metrics}.
+ * Callbacks run on the I/O threads that cause them, several at once, so implementations
+ * must be thread-safe and quick; {@link Metrics} is one that aggregates them.
+ */
+public interface MetricsListener {
+
+    /**
+     * @param bytes       size of the encoded packet
+     * @param encodeNanos time spent encoding it; for polling, the payload's time split evenly
+     *                    across its packets
+     */
+    void onPacketSent(String transport, Packet packet, long bytes, long encodeNanos);
+
+    /**
+     * @param bytes       size of the encoded packet
+     * @param decodeNanos time spent decoding it, or -1 where decoding is interleaved with
+     *                    reading from the network (polling)
+     */
+    void onPacketReceived(String transport, Packet packet, long bytes, long decodeNanos);
+
+    /**
+     * Sampled on every drain of the send queue.
+     *
+     * @param queuedPackets  packets waiting in {@link WebSocket#send}'s queue
+     * @param transportBytes bytes handed to the transport but not written yet
+     */
+    void onQueueSize(int queuedPackets, long transportBytes);
+
+    void onTransportOpen(String transport);
+
+    /**
+     * @param error null if the transport closed cleanly
+     */
+    void onTransportClose(String transport, Throwable error);
+
+    void onReconnectScheduled(int attempt, long delayMillis);
+
+    void onPingRtt(long rttMillis);
+
+    void onError(String message, Throwable t);
+}
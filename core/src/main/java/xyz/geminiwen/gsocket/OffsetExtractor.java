@@ -0,0 +1,14 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Reads the position a server assigned to a message in its outgoing stream, for session
+ * resume; see {@link Options#resumeOffsetExtractor}. Called on the reader thread for every
+ * MESSAGE packet, so it should look at no more of the payload than it has to.
+ */
+public interface OffsetExtractor {
+
+    /**
+     * @return the packet's offset, or -1 if it carries none
+     */
+    long offsetOf(Packet packet);
+}
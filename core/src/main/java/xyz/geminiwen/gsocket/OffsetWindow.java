@@ -0,0 +1,105 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.Arrays;
+
+/**
+ * The last {@code capacity} message offsets received, as a ring in arrival order plus an
+ * open-addressing set over it, so membership checks are O(1) and nothing is boxed. Not
+ * thread-safe.
+ */
+/*package*/ final class OffsetWindow {
+
+    private final long[] mRing;
+    private int mNext;
+    private int mSize;
+
+    private final long[] mKeys;
+    private final boolean[] mUsed;
+
+    /*package*/ OffsetWindow(int capacity) {
+        mRing = new long[Math.max(1, capacity)];
+        int tableSize = 4;
+        while (tableSize < mRing.length * 2) {
+            tableSize <<= 1;
+        }
+        mKeys = new long[tableSize];
+        mUsed = new boolean[tableSize];
+    }
+
+    /**
+     * Adds {@code offset}, forgetting the oldest one if the window is full.
+     *
+     * @return false if the offset is in the window already
+     */
+    /*package*/ boolean add(long offset) {
+        int mask = mKeys.length - 1;
+        int i = hash(offset) & mask;
+        for (; mUsed[i]; i = (i + 1) & mask) {
+            if (mKeys[i] == offset) {
+                return false;
+            }
+        }
+        if (mSize == mRing.length) {
+            remove(mRing[mNext]);
+            mSize--;
+            // the removal may have shifted the free slot found above
+            i = hash(offset) & mask;
+            while (mUsed[i]) {
+                i = (i + 1) & mask;
+            }
+        }
+        mKeys[i] = offset;
+        mUsed[i] = true;
+        mRing[mNext] = offset;
+        mNext = (mNext + 1) % mRing.length;
+        mSize++;
+        return true;
+    }
+
+    /*package*/ void clear() {
+        Arrays.fill(mUsed, false);
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /*package*/ boolean contains(long offset) {
+        int mask = mKeys.length - 1;
+        for (int i = hash(offset) & mask; mUsed[i]; i = (i + 1) & mask) {
+            if (mKeys[i] == offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(long offset) {
+        int mask = mKeys.length - 1;
+        int i = hash(offset) & mask;
+        while (mUsed[i] && mKeys[i] != offset) {
+            i = (i + 1) & mask;
+        }
+        if (!mUsed[i]) {
+            return;
+        }
+        // backward-shift deletion, as in IntObjectMap
+        int hole = i;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!mUsed[i]) {
+                break;
+            }
+            int home = hash(mKeys[i]) & mask;
+            boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                mKeys[hole] = mKeys[i];
+                hole = i;
+            }
+        }
+        mUsed[hole] = false;
+    }
+
+    private static int hash(long offset) {
+        long h = offset * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
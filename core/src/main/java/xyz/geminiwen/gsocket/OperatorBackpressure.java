@@ -0,0 +1,252 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
+
+/**
+ * Buffers packets one subscriber has not requested yet according to an
+ * {@link Options.Backpressure} strategy, so a slow subscriber only loses its own packets:
+ * <ul>
+ * <li>BUFFER keeps up to {@code capacity} packets and fails the stream beyond that.</li>
+ * <li>DROP drops messages that arrive while nothing is requested.</li>
+ * <li>LATEST keeps only the newest of those messages.</li>
+ * <li>CONFLATE is BUFFER, except that a message with a conflation key replaces the buffered
+ * one with the same key in its place, so the subscriber sees at most one pending update per
+ * key however fast they arrive.</li>
+ * </ul>
+ * Only MESSAGE packets are ever dropped or replaced; control packets are always buffered.
+ */
+/*package*/ final class OperatorBackpressure implements Observable.Operator<Packet, Packet> {
+
+    private final Options.Backpressure mStrategy;
+    private final KeyExtractor mKeys;
+    private final long mCapacity;
+
+    /**
+     * @param keys the conflation keys for CONFLATE, which is BUFFER without them
+     */
+    /*package*/ OperatorBackpressure(Options.Backpressure strategy, KeyExtractor keys,
+                                     long capacity) {
+        mStrategy = strategy == Options.Backpressure.CONFLATE && keys == null
+                ? Options.Backpressure.BUFFER : strategy;
+        mKeys = keys;
+        mCapacity = capacity;
+    }
+
+    @Override
+    public Subscriber<? super Packet> call(Subscriber<? super Packet> child) {
+        final BufferSubscriber parent = new BufferSubscriber(child, mStrategy, mKeys, mCapacity);
+        child.add(parent);
+        child.setProducer(new Producer() {
+            @Override
+            public void request(long n) {
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    private static final class BufferSubscriber extends Subscriber<Packet> {
+        private final Subscriber<? super Packet> mChild;
+        private final Options.Backpressure mStrategy;
+        private final KeyExtractor mKeys;
+        private final long mCapacity;
+
+        // guarded by this: packets, and Slots for keyed ones
+        private final ArrayDeque<Object> mQueue = new ArrayDeque<>();
+        private final Map<Object, Slot> mSlots = new HashMap<>();
+        // LATEST: the buffered message beyond what is requested, if any
+        private Packet mLatest;
+        private long mRequested;
+        private boolean mDone;
+        private Throwable mError;
+        private boolean mEmitting;
+        private boolean mMissed;
+
+        BufferSubscriber(Subscriber<? super Packet> child, Options.Backpressure strategy,
+                         KeyExtractor keys, long capacity) {
+            mChild = child;
+            mStrategy = strategy;
+            mKeys = keys;
+            mCapacity = capacity;
+        }
+
+        @Override
+        public void onStart() {
+            request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Packet packet) {
+            boolean message = packet.type == Packet.MESSAGE;
+            Object key = message && mStrategy == Options.Backpressure.CONFLATE
+                    ? mKeys.keyOf(packet) : null;
+            boolean overflow = false;
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                boolean behind = mQueue.size() >= mRequested;
+                Slot slot = key != null ? mSlots.get(key) : null;
+                if (message && behind && mStrategy == Options.Backpressure.DROP) {
+                    return;
+                } else if (message && behind && mStrategy == Options.Backpressure.LATEST) {
+                    // moves to the end rather than replacing in place, so it stays behind
+                    // any control packet that arrived before it
+                    if (mLatest != null) {
+                        mQueue.removeLastOccurrence(mLatest);
+                    }
+                    mLatest = packet;
+                    mQueue.add(packet);
+                } else if (slot != null) {
+                    slot.mPacket = packet;
+                } else if (mQueue.size() >= mCapacity) {
+                    overflow = true;
+                    mDone = true;
+                    mError = new MissingBackpressureException(
+                            "Overflowed packet buffer of " + mCapacity);
+                } else if (key != null) {
+                    slot = new Slot(key, packet);
+                    mSlots.put(key, slot);
+                    mQueue.add(slot);
+                } else {
+                    mQueue.add(packet);
+                }
+            }
+            if (overflow) {
+                unsubscribe();
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+                mError = e;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+            }
+            drain();
+        }
+
+        void requestMore(long n) {
+            if (n <= 0) {
+                return;
+            }
+            synchronized (this) {
+                long requested = mRequested + n;
+                mRequested = requested < 0 ? Long.MAX_VALUE : requested;
+            }
+            drain();
+        }
+
+        /**
+         * Emits what is buffered and requested. One thread emits at a time; others leave a
+         * note for it to loop again.
+         */
+        private void drain() {
+            synchronized (this) {
+                if (mEmitting) {
+                    mMissed = true;
+                    return;
+                }
+                mEmitting = true;
+            }
+            boolean finished = false;
+            try {
+                while (true) {
+                    while (true) {
+                        Packet next;
+                        boolean terminate = false;
+                        Throwable error = null;
+                        synchronized (this) {
+                            if (mQueue.isEmpty()) {
+                                if (!mDone || mChild.isUnsubscribed()) {
+                                    break;
+                                }
+                                terminate = true;
+                                error = mError;
+                                next = null;
+                            } else if (mRequested == 0) {
+                                break;
+                            } else {
+                                next = poll();
+                                if (mRequested != Long.MAX_VALUE) {
+                                    mRequested--;
+                                }
+                            }
+                        }
+                        if (terminate) {
+                            finished = true;
+                            if (error != null) {
+                                mChild.onError(error);
+                            } else {
+                                mChild.onCompleted();
+                            }
+                            return;
+                        }
+                        mChild.onNext(next);
+                    }
+                    synchronized (this) {
+                        if (!mMissed) {
+                            finished = true;
+                            mEmitting = false;
+                            return;
+                        }
+                        mMissed = false;
+                    }
+                }
+            } finally {
+                if (!finished) {
+                    // the child threw; let the next signal try again
+                    synchronized (this) {
+                        mEmitting = false;
+                    }
+                }
+            }
+        }
+
+        // must hold this
+        private Packet poll() {
+            Object entry = mQueue.poll();
+            if (entry == mLatest) {
+                mLatest = null;
+            }
+            if (!(entry instanceof Slot)) {
+                return (Packet) entry;
+            }
+            Slot slot = (Slot) entry;
+            mSlots.remove(slot.mKey);
+            return slot.mPacket;
+        }
+    }
+
+    private static final class Slot {
+        final Object mKey;
+        Packet mPacket;
+
+        Slot(Object key, Packet packet) {
+            mKey = key;
+            mPacket = packet;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+import okhttp3.OkHttpClient;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Created by geminiwen on 2016/12/3.
+ */
+
+public class Options {
+
+    public enum Backpressure {
+        BUFFER, DROP, LATEST,
+        // BUFFER, except that a buffered message is replaced by a newer one with the same
+        // conflationKeyExtractor key; plain BUFFER without an extractor
+        CONFLATE
+    }
+
+    public OkHttpClient httpClient;
+    public String host;
+    public String scheme;
+    public String path;
+    public int port;
+
+    // transports to connect with, the first one opens the session
+    public String[] transports = {WebSocketTransport.NAME};
+    // whether a polling session moves to websocket when the server offers it
+    public boolean upgrade = true;
+    // deflate polling POST bodies of at least compressionThreshold bytes and accept compressed
+    // responses; the server must inflate request bodies. okhttp 3.5 cannot negotiate
+    // permessage-deflate, so websocket frames always go uncompressed
+    public boolean compression = false;
+    public int compressionThreshold = 1024;
+
+    // packets buffered by WebSocket.send() while the transport is opening or busy
+    public int sendQueueCapacity = 1024;
+    // bytes queued inside okhttp above which draining pauses; okhttp closes the socket at 16 MiB
+    public long sendHighWaterMark = 1024 * 1024;
+    // packets handed to okhttp per drain pass
+    public int sendBatchSize = 64;
+    // messages of at least this many bytes are sent in the bulk lane, see WebSocket.Priority
+    public long bulkThreshold = 64 * 1024;
+    // bulk bytes queued inside okhttp above which bulk sends wait, which bounds how long a
+    // ping or an interactive message can sit behind them; a single larger message still goes
+    // out whole, engine.io cannot split a message across frames
+    public long bulkChunkBytes = 64 * 1024;
+
+    // keys messages for conflation: a single message passed to WebSocket.send() replaces the
+    // queued one with the same key in place, and Backpressure.CONFLATE does the same for
+    // received ones, so traffic is bounded by the number of keys rather than the update rate
+    public KeyExtractor conflationKeyExtractor;
+
+    // packets replayed to late subscribers of WebSocket.onPacket(); 0 disables replay
+    public int packetReplaySize = 0;
+    // what onPacket() does when a subscriber falls behind; never drops control packets
+    public Backpressure packetBackpressure = Backpressure.BUFFER;
+    // capacity of the BUFFER and CONFLATE strategies per subscriber; overflowing it fails
+    // that subscriber's stream
+    public long packetBufferSize = 1024;
+    // where WebSocket.onMessage(Serializer) decodes payloads, off the okhttp reader thread
+    public Scheduler deserializeScheduler = Schedulers.computation();
+    // decodes frames and runs packet listeners off okhttp's reader thread; one executor can
+    // serve many sockets, each still handles its packets one at a time and in order. See
+    // IO.decodeExecutor() and IO.newVirtualThreadExecutor(); null decodes on the reader thread
+    public Executor decodeExecutor;
+    // frames a socket may have waiting on decodeExecutor; beyond that okhttp stops reading,
+    // which pushes back on the server instead of queueing without limit
+    public int decodeQueueCapacity = 1024;
+    // where onPacket() subscribers are called, so a slow one holds up neither decoding nor
+    // other sockets; null calls them on the decoding thread
+    public Scheduler deliveryScheduler;
+
+    // receives packet, queue, heartbeat and reconnection events; null turns instrumentation off
+    public MetricsListener metrics;
+
+    // file journaling packets sent while disconnected, replayed after the next handshake;
+    // null keeps only the in-memory send queue
+    public File journalFile;
+    // size of the journal file, which is mapped into memory as a whole
+    public int journalMaxBytes = 4 * 1024 * 1024;
+    public OutboundJournal.Eviction journalEviction = OutboundJournal.Eviction.DROP_OLDEST;
+
+    // reads the server's offset from a message, enabling session resume: when the server has
+    // dropped the session, the new handshake carries the old sid and the last offset received
+    public OffsetExtractor resumeOffsetExtractor;
+    public String resumeSidParameter = "resume_sid";
+    public String resumeOffsetParameter = "resume_offset";
+    // offsets remembered to drop messages the server replays twice
+    public int resumeWindowSize = 1024;
+
+    // reconnect after the transport drops, unless WebSocket.close() was called
+    public boolean reconnection = true;
+    public int reconnectionAttempts = Integer.MAX_VALUE;
+    public long reconnectionDelay = 1000;
+    public long reconnectionDelayMax = 5000;
+    // 0.5 spreads each delay over [0.5, 1.5] of its nominal value
+    public double randomizationFactor = 0.5;
+
+    // milliseconds a socket.io emitWithAck() waits for its ack; 0 waits forever
+    public long ackTimeout = 10000;
+    // bounds on a socket.io binary packet being reassembled; larger packets are dropped
+    public int maxAttachments = 256;
+    public long maxAttachmentBytes = 16 * 1024 * 1024;
+}
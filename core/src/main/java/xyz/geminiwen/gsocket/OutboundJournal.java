@@ -0,0 +1,424 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import okio.ByteString;
+
+/**
+ * A bounded, disk-backed FIFO of outgoing packets, kept in one memory-mapped file used as a
+ * ring: records are appended at the tail and taken from the head, and the positions live in
+ * a small header so the journal survives process restarts. The packets of one send are
+ * journaled, evicted and taken together, and remember their {@link WebSocket.Priority} lane.
+ * Sends may carry a message id; appending an id that is already journaled is a no-op.
+ *
+ * <p>Record layout: length (int, of everything after it), sequence number (long), packet
+ * type (byte), data kind (byte), flags (byte: the lane, and {@link #FLAG_MORE} if the next
+ * record belongs to the same send), id length (short), id (UTF-8), data. A length of -1
+ * marks the unused end of the file where the next record wrapped to the start; a length of
+ * -n, where the records put ahead of the head by {@link #prepend} end, sends the reader on to
+ * position n.
+ */
+public final class OutboundJournal {
+
+    public enum Eviction {
+        // make room by dropping the oldest records
+        DROP_OLDEST,
+        // refuse new records with an EngineIOException
+        REJECT_NEW
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x47534a32; // "GSJ2"
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int HEAD_OFFSET = 4;
+    private static final int TAIL_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int NEXT_SEQ_OFFSET = 16;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 1 + 1 + 1 + 2;
+    private static final int FLAGS_OFFSET = 14;
+    private static final int ID_LENGTH_OFFSET = 15;
+    private static final int WRAP = -1;
+
+    private static final byte KIND_NULL = 0;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_BINARY = 2;
+
+    private static final int FLAG_MORE = 0x80;
+    private static final int FLAG_LANE = 0x0f;
+    private static final WebSocket.Priority[] LANES = WebSocket.Priority.values();
+
+    private final MappedByteBuffer mBuffer;
+    private final int mEnd;
+    private final Eviction mEviction;
+    // ids of the records currently journaled
+    private final Set<String> mIds = new HashSet<>();
+
+    private int mHead;
+    private int mTail;
+    private int mCount;
+    private long mNextSeq;
+    private long mEvicted;
+
+    /**
+     * Opens or creates the journal at {@code file}. An existing journal of a different size or
+     * format is discarded.
+     */
+    public OutboundJournal(File file, int maxBytes, Eviction eviction) throws IOException {
+        if (maxBytes < HEADER_SIZE + RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("journal too small: " + maxBytes);
+        }
+        mEnd = maxBytes;
+        mEviction = eviction;
+        boolean fresh = !file.exists() || file.length() != maxBytes;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(maxBytes);
+            // the mapping stays valid after the channel is closed
+            mBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, maxBytes);
+        } finally {
+            raf.close();
+        }
+        if (fresh || mBuffer.getInt(MAGIC_OFFSET) != MAGIC || !load()) {
+            reset(0);
+        }
+    }
+
+    public synchronized int size() {
+        return mCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * Records dropped to make room since the journal was opened.
+     */
+    public synchronized long evicted() {
+        return mEvicted;
+    }
+
+    /**
+     * Appends the packets of one send, evicting old sends if the journal is full and the
+     * policy allows. Either all of them are journaled or none.
+     *
+     * @param messageId null, or an id that suppresses the send if it is already journaled
+     * @return false if {@code messageId} was a duplicate
+     * @throws EngineIOException if the packets cannot be journaled
+     */
+    public synchronized boolean append(WebSocket.Priority priority, Packet[] packets,
+                                       String messageId) {
+        if (messageId != null && mIds.contains(messageId)) {
+            return false;
+        }
+        byte[] id = messageId == null ? new byte[0] : messageId.getBytes(UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new EngineIOException("message id too long");
+        }
+        byte[][] data = new byte[packets.length][];
+        int size = encode(packets, id, data);
+        if (packets.length == 0) {
+            return true;
+        }
+        // the records go out one after the other into space that holds all of them
+        while (!fits(size)) {
+            if (mEviction != Eviction.DROP_OLDEST) {
+                throw new EngineIOException("Journal full");
+            }
+            mEvicted += removeHead();
+        }
+        for (int i = 0; i < packets.length; i++) {
+            int flags = flags(priority, i, packets.length);
+            int recordSize = RECORD_OVERHEAD + (i == 0 ? id.length : 0) + data[i].length;
+            if (mEnd - mTail < recordSize) {
+                if (mEnd - mTail >= 4) {
+                    mBuffer.putInt(mTail, WRAP);
+                }
+                mTail = HEADER_SIZE;
+            }
+            write(mTail, packets[i], flags, i == 0 ? id : new byte[0], data[i]);
+            mTail += recordSize;
+            mCount++;
+        }
+        if (messageId != null) {
+            mIds.add(messageId);
+        }
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Puts the packets of one send ahead of everything journaled, to be taken first. It goes
+     * in free space just before the head, and newer records are never evicted for it.
+     *
+     * @return false if there was no room and the policy drops the oldest sends, which this is
+     * @throws EngineIOException if the packets cannot be journaled
+     */
+    /*package*/ synchronized boolean prepend(WebSocket.Priority priority, Packet[] packets) {
+        if (mCount == 0) {
+            return append(priority, packets, null);
+        }
+        byte[][] data = new byte[packets.length][];
+        int size = encode(packets, new byte[0], data);
+        int pos;
+        int jumpTo = -1;
+        if (mTail <= mHead) {
+            // wrapped: the free space runs from the tail to the head
+            pos = mHead - mTail >= size ? mHead - size : -1;
+        } else if (mHead - HEADER_SIZE >= size) {
+            pos = mHead - size;
+        } else if (mEnd - mTail >= size + 4) {
+            // at the end of the file, followed by a jump back to the head
+            pos = mEnd - size - 4;
+            jumpTo = mHead;
+        } else {
+            pos = -1;
+        }
+        if (pos < 0) {
+            if (mEviction != Eviction.DROP_OLDEST) {
+                throw new EngineIOException("Journal full");
+            }
+            mEvicted += packets.length;
+            return false;
+        }
+
+        int head = pos;
+        for (int i = 0; i < packets.length; i++) {
+            write(pos, packets[i], flags(priority, i, packets.length), new byte[0], data[i]);
+            pos += RECORD_OVERHEAD + data[i].length;
+            mCount++;
+        }
+        if (jumpTo >= 0) {
+            mBuffer.putInt(pos, -jumpTo);
+        }
+        mHead = head;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Moves the oldest sends to their lanes of {@code queue}, whole sends only, until at least
+     * {@code max} packets are moved or the journal is empty. Only these are read from the
+     * file, so a large journal is drained without being loaded at once.
+     *
+     * @return the number of packets moved
+     */
+    /*package*/ synchronized int drainTo(SendQueue queue, int max) {
+        int moved = 0;
+        List<Packet> packets = new ArrayList<>();
+        while (moved < max && mCount > 0) {
+            int flags;
+            do {
+                flags = mBuffer.get(mHead + FLAGS_OFFSET);
+                packets.add(readHead());
+                removeRecord();
+            } while ((flags & FLAG_MORE) != 0 && mCount > 0);
+            queue.addAll(LANES[flags & FLAG_LANE], packets.toArray(new Packet[packets.size()]));
+            moved += packets.size();
+            packets.clear();
+        }
+        writeHeader();
+        return moved;
+    }
+
+    public synchronized void clear() {
+        reset(mNextSeq);
+    }
+
+    private boolean fits(int size) {
+        if (mCount == 0) {
+            mHead = mTail = HEADER_SIZE;
+            return true;
+        }
+        if (mTail > mHead) {
+            return mEnd - mTail >= size || mHead - HEADER_SIZE >= size;
+        }
+        // wrapped: the free space runs from the tail to the head
+        return mHead - mTail >= size;
+    }
+
+    /**
+     * Fills {@code data} with the payloads of {@code packets} and returns the size of their
+     * records, the first one carrying {@code id}.
+     */
+    private int encode(Packet[] packets, byte[] id, byte[][] data) {
+        long size = 0;
+        for (int i = 0; i < packets.length; i++) {
+            Object value = packets[i].data;
+            if (value == null) {
+                data[i] = new byte[0];
+            } else if (value instanceof String) {
+                data[i] = ((String) value).getBytes(UTF_8);
+            } else if (value instanceof ByteString) {
+                data[i] = ((ByteString) value).toByteArray();
+            } else if (value instanceof byte[]) {
+                data[i] = (byte[]) value;
+            } else {
+                throw new EngineIOException("cannot journal " + value.getClass().getName());
+            }
+            size += RECORD_OVERHEAD + (i == 0 ? id.length : 0) + data[i].length;
+        }
+        if (size > mEnd - HEADER_SIZE) {
+            throw new EngineIOException("packet larger than the journal");
+        }
+        return (int) size;
+    }
+
+    private static int flags(WebSocket.Priority priority, int index, int count) {
+        return priority.ordinal() | (index < count - 1 ? FLAG_MORE : 0);
+    }
+
+    private void write(int pos, Packet packet, int flags, byte[] id, byte[] data) {
+        byte kind;
+        if (packet.data == null) {
+            kind = KIND_NULL;
+        } else if (packet.data instanceof String) {
+            kind = KIND_TEXT;
+        } else {
+            kind = KIND_BINARY;
+        }
+        mBuffer.putInt(pos, RECORD_OVERHEAD - 4 + id.length + data.length);
+        mBuffer.putLong(pos + 4, mNextSeq++);
+        mBuffer.put(pos + 12, (byte) packet.type);
+        mBuffer.put(pos + 13, kind);
+        mBuffer.put(pos + FLAGS_OFFSET, (byte) flags);
+        mBuffer.putShort(pos + ID_LENGTH_OFFSET, (short) id.length);
+        put(pos + RECORD_OVERHEAD, id);
+        put(pos + RECORD_OVERHEAD + id.length, data);
+    }
+
+    private Packet readHead() {
+        int pos = mHead;
+        int type = mBuffer.get(pos + 12);
+        byte kind = mBuffer.get(pos + 13);
+        int idLength = mBuffer.getShort(pos + ID_LENGTH_OFFSET);
+        int dataLength = mBuffer.getInt(pos) + 4 - RECORD_OVERHEAD - idLength;
+        byte[] data = get(pos + RECORD_OVERHEAD + idLength, dataLength);
+        if (kind == KIND_TEXT) {
+            return new Packet<>(type, new String(data, UTF_8));
+        }
+        if (kind == KIND_BINARY) {
+            return new Packet<>(type, ByteString.of(data));
+        }
+        return new Packet(type);
+    }
+
+    /**
+     * Removes the oldest send; returns the number of its packets.
+     */
+    private int removeHead() {
+        int removed = 0;
+        int flags;
+        do {
+            flags = mBuffer.get(mHead + FLAGS_OFFSET);
+            removeRecord();
+            removed++;
+        } while ((flags & FLAG_MORE) != 0 && mCount > 0);
+        return removed;
+    }
+
+    private void removeRecord() {
+        int pos = mHead;
+        int idLength = mBuffer.getShort(pos + ID_LENGTH_OFFSET);
+        if (idLength > 0) {
+            mIds.remove(new String(get(pos + RECORD_OVERHEAD, idLength), UTF_8));
+        }
+        mHead = follow(pos + mBuffer.getInt(pos) + 4);
+        mCount--;
+        if (mCount == 0) {
+            mHead = mTail = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * The position of the record at or after {@code pos}, following a wrap or a jump.
+     */
+    private int follow(int pos) {
+        if (mEnd - pos < 4) {
+            return HEADER_SIZE;
+        }
+        int length = mBuffer.getInt(pos);
+        if (length == WRAP) {
+            return HEADER_SIZE;
+        }
+        return length < 0 ? -length : pos;
+    }
+
+    /**
+     * Validates the header and the record chain of an existing journal and rebuilds the id
+     * set; returns false if the file is inconsistent.
+     */
+    private boolean load() {
+        mHead = mBuffer.getInt(HEAD_OFFSET);
+        mTail = mBuffer.getInt(TAIL_OFFSET);
+        mCount = mBuffer.getInt(COUNT_OFFSET);
+        mNextSeq = mBuffer.getLong(NEXT_SEQ_OFFSET);
+        if (mHead < HEADER_SIZE || mHead > mEnd || mTail < HEADER_SIZE || mTail > mEnd || mCount < 0) {
+            return false;
+        }
+        mIds.clear();
+        int pos = mHead;
+        for (int i = 0; i < mCount; i++) {
+            pos = follow(pos);
+            if (pos < HEADER_SIZE || pos > mEnd - RECORD_OVERHEAD) {
+                return false;
+            }
+            int length = mBuffer.getInt(pos);
+            if (length < RECORD_OVERHEAD - 4 || pos + 4 + length > mEnd) {
+                return false;
+            }
+            int idLength = mBuffer.getShort(pos + ID_LENGTH_OFFSET);
+            if (idLength < 0 || RECORD_OVERHEAD + idLength > length + 4
+                    || (mBuffer.get(pos + FLAGS_OFFSET) & FLAG_LANE) >= LANES.length) {
+                return false;
+            }
+            if (idLength > 0) {
+                mIds.add(new String(get(pos + RECORD_OVERHEAD, idLength), UTF_8));
+            }
+            pos += 4 + length;
+        }
+        return mCount == 0 || pos == mTail;
+    }
+
+    private void reset(long nextSeq) {
+        mHead = mTail = HEADER_SIZE;
+        mCount = 0;
+        mNextSeq = nextSeq;
+        mIds.clear();
+        mBuffer.putInt(MAGIC_OFFSET, MAGIC);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        mBuffer.putInt(HEAD_OFFSET, mHead);
+        mBuffer.putInt(TAIL_OFFSET, mTail);
+        mBuffer.putInt(COUNT_OFFSET, mCount);
+        mBuffer.putLong(NEXT_SEQ_OFFSET, mNextSeq);
+    }
+
+    private void put(int pos, byte[] bytes) {
+        ByteBuffer target = mBuffer.duplicate();
+        target.position(pos);
+        target.put(bytes);
+    }
+
+    private byte[] get(int pos, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = mBuffer.duplicate();
+        source.position(pos);
+        source.get(bytes);
+        return bytes;
+    }
+}
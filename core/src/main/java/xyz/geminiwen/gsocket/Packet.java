@@ -0,0 +1,47 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Created by geminiwen on 2016/12/3.
+ */
+
+public class Packet<T> {
+
+    static final public int OPEN = 0;
+    static final public int CLOSE = 1;
+    static final public int PING = 2;
+    static final public int PONG = 3;
+    static final public int MESSAGE = 4;
+    static final public int UPGRADE = 5;
+    static final public int NOOP = 6;
+    static final public int ERROR = -1;
+
+    private static final String[] sTypeNames = {
+            "open", "close", "ping", "pong", "message", "upgrade", "noop"
+    };
+
+    public int type;
+    public T data;
+
+
+    public Packet(int type) {
+        this(type, null);
+    }
+
+    public Packet(int type, T data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    /*package*/ static boolean isValidType(int type) {
+        return type >= 0 && type < sTypeNames.length;
+    }
+
+    public static String typeName(int type) {
+        return isValidType(type) ? sTypeNames[type] : "error";
+    }
+
+    @Override
+    public String toString() {
+        return typeName(this.type) + " : " + this.data;
+    }
+}
@@ -0,0 +1,233 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import static java.lang.System.arraycopy;
+
+/**
+ * Created by geminiwen on 2016/12/3.
+ */
+
+public class Parser {
+
+    private static final int MAX_INT_CHAR_LENGTH = String.valueOf(Integer.MAX_VALUE).length();
+
+    public static final int PROTOCOL = 3;
+
+    private static Packet<String> sErrorPacket = new Packet<>(Packet.ERROR, "parser error");
+
+
+    private Parser() {}
+
+    public static String encodePacketString(Packet<String> packet) throws UTF8Exception {
+        return encodePacketString(packet, false);
+    }
+
+    public static byte[] encodePacketBinary(Packet<byte[]> packet) throws UTF8Exception {
+        byte[] buffer = new byte[1 + packet.data.length];
+        buffer[0] = (byte) packet.type;
+        arraycopy(packet.data, 0, buffer, 1, packet.data.length);
+        return buffer;
+    }
+
+    /**
+     * Writes the type byte followed by the payload into {@code sink}. The payload may be a
+     * {@link ByteString} or a {@code byte[]}; {@link Buffer#snapshot()} on the sink then yields
+     * a frame that shares the sink's segments instead of copying them again.
+     */
+    public static void encodePacketBinary(Packet<?> packet, Buffer sink) {
+        sink.writeByte(packet.type);
+        if (packet.data instanceof ByteString) {
+            sink.write((ByteString) packet.data);
+        } else if (packet.data instanceof byte[]) {
+            sink.write((byte[]) packet.data);
+        } else if (packet.data != null) {
+            throw new IllegalArgumentException("binary packet data must be ByteString or byte[]");
+        }
+    }
+
+    public static String encodePacketString(Packet<String> packet, boolean utf8encode) throws UTF8Exception {
+        int capacity = 1 + (packet.data == null ? 0 : packet.data.length());
+        return encodePacket(packet, new StringBuilder(capacity), utf8encode).toString();
+    }
+
+    /**
+     * Appends the encoded packet to {@code out}, so a caller can keep one builder per
+     * connection and reuse it for every frame.
+     */
+    public static StringBuilder encodePacket(Packet<String> packet, StringBuilder out, boolean utf8encode)
+            throws UTF8Exception {
+        out.append(typeChar(packet.type));
+
+        if (null != packet.data) {
+            out.append(utf8encode ? UTF8.encode(packet.data) : packet.data);
+        }
+
+        return out;
+    }
+
+    /**
+     * Returns the packet type code of an encoded string frame, or {@link Packet#ERROR} if the
+     * frame does not start with a known type.
+     */
+    public static int packetType(CharSequence data) {
+        if (data.length() == 0) {
+            return Packet.ERROR;
+        }
+        int type = data.charAt(0) - '0';
+        return Packet.isValidType(type) ? type : Packet.ERROR;
+    }
+
+    public static Packet<String> decodePacket(String data) {
+        return decodePacket(data, false);
+    }
+
+    public static Packet<String> decodePacket(String data, boolean utf8decode) {
+        int type = packetType(data);
+
+        if (utf8decode) {
+            try {
+                data = UTF8.decode(data);
+            } catch (UTF8Exception e) {
+                return sErrorPacket;
+            }
+        }
+
+        if (type == Packet.ERROR) {
+            return sErrorPacket;
+        }
+
+        if (data.length() > 1) {
+            return new Packet<>(type, data.substring(1));
+        } else {
+            return new Packet<>(type);
+        }
+    }
+
+    /**
+     * Like {@link #decodePacket(String)} but exposes the payload as a {@link PayloadView} over
+     * {@code data}, so inspecting it does not copy the frame.
+     */
+    public static Packet<PayloadView> decodePacketView(String data) {
+        int type = packetType(data);
+        if (type == Packet.ERROR) {
+            return new Packet<>(Packet.ERROR, new PayloadView(data, 0, data.length()));
+        }
+
+        if (data.length() > 1) {
+            return new Packet<>(type, new PayloadView(data, 1, data.length() - 1));
+        } else {
+            return new Packet<>(type);
+        }
+    }
+
+    public static Packet<byte[]> decodePacket(byte[] source) {
+        int type = source.length > 0 ? source[0] : Packet.ERROR;
+        if (!Packet.isValidType(type)) {
+            return new Packet<>(Packet.ERROR, (byte[]) null);
+        }
+        byte[] buffer = new byte[source.length - 1];
+        arraycopy(source, 1, buffer, 0, buffer.length);
+        return new Packet<>(type, buffer);
+    }
+
+    /**
+     * Decodes a binary frame as delivered by okhttp. The payload is sliced straight out of the
+     * frame, so it is copied once rather than going through an intermediate {@code byte[]}.
+     */
+    public static Packet<ByteString> decodePacket(ByteString source) {
+        int type = source.size() > 0 ? source.getByte(0) : Packet.ERROR;
+        if (!Packet.isValidType(type)) {
+            return new Packet<>(Packet.ERROR, (ByteString) null);
+        }
+        return new Packet<>(type, source.substring(1));
+    }
+
+    /**
+     * Encodes packets as an engine.io v3 text payload, {@code <length>:<packet>} per packet.
+     * Binary packets are base64 encoded, for transports that cannot carry binary data.
+     */
+    public static StringBuilder encodePayload(Packet[] packets, StringBuilder out) throws UTF8Exception {
+        if (packets.length == 0) {
+            return out.append("0:");
+        }
+        for (Packet packet : packets) {
+            if (packet.data == null || packet.data instanceof String) {
+                String data = (String) packet.data;
+                out.append(1 + (data == null ? 0 : data.length())).append(':');
+                encodePacket((Packet<String>) packet, out, false);
+            } else {
+                String base64 = binaryData(packet).base64();
+                out.append(2 + base64.length()).append(':')
+                        .append('b').append(typeChar(packet.type)).append(base64);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Encodes packets as an engine.io v3 binary payload into {@code sink}:
+     * {@code <0 for string|1 for binary><length digits>0xFF<packet>} per packet.
+     */
+    public static void encodePayloadAsBinary(Packet[] packets, Buffer sink) {
+        Buffer packetBuffer = new Buffer();
+        for (Packet packet : packets) {
+            boolean binary = packet.data != null && !(packet.data instanceof String);
+            if (binary) {
+                encodePacketBinary(packet, packetBuffer);
+            } else {
+                packetBuffer.writeByte(typeChar(packet.type));
+                if (packet.data != null) {
+                    packetBuffer.writeUtf8((String) packet.data);
+                }
+            }
+            sink.writeByte(binary ? 1 : 0);
+            String length = String.valueOf(packetBuffer.size());
+            for (int i = 0; i < length.length(); i++) {
+                sink.writeByte(length.charAt(i) - '0');
+            }
+            sink.writeByte(0xFF);
+            // moves the segments over rather than copying them
+            sink.write(packetBuffer, packetBuffer.size());
+        }
+    }
+
+    /**
+     * Decodes a complete text payload. Use {@link PayloadDecoder} to read one incrementally.
+     */
+    public static List<Packet> decodePayload(String data) {
+        List<Packet> packets = new ArrayList<>();
+        PayloadDecoder decoder = new PayloadDecoder(new Buffer().writeUtf8(data));
+        try {
+            Packet packet;
+            while ((packet = decoder.next()) != null) {
+                packets.add(packet);
+            }
+        } catch (IOException e) {
+            packets.add(sErrorPacket);
+        }
+        return packets;
+    }
+
+    private static ByteString binaryData(Packet packet) {
+        if (packet.data instanceof ByteString) {
+            return (ByteString) packet.data;
+        }
+        if (packet.data instanceof byte[]) {
+            return ByteString.of((byte[]) packet.data);
+        }
+        throw new IllegalArgumentException("binary packet data must be ByteString or byte[]");
+    }
+
+    private static char typeChar(int type) {
+        if (!Packet.isValidType(type)) {
+            throw new IllegalArgumentException("unknown packet type " + type);
+        }
+        return (char) ('0' + type);
+    }
+}
@@ -0,0 +1,103 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Reads the packets of an engine.io v3 payload one at a time straight from a source, such as
+ * a polling response body, without first reading the whole payload into a String.
+ *
+ * Both encodings are accepted, even mixed: text ({@code <length>:<packet>}, length counted in
+ * UTF-16 chars, binary packets as {@code b<type><base64>}) and binary ({@code <0|1><length
+ * digits>0xFF<packet>}, length counted in bytes).
+ */
+public final class PayloadDecoder {
+
+    private static final int MAX_LENGTH_DIGITS = 10;
+
+    private final BufferedSource mSource;
+    private boolean mFailed;
+
+    public PayloadDecoder(BufferedSource source) {
+        mSource = source;
+    }
+
+    /**
+     * Returns the next packet, or null once the payload is exhausted. A malformed payload
+     * yields a single {@link Packet#ERROR} packet, after which the decoder stops.
+     */
+    public Packet next() throws IOException {
+        while (!mFailed && !mSource.exhausted()) {
+            int first = mSource.readByte() & 0xFF;
+            Packet packet = first <= 1 ? nextBinary(first == 1) : nextText(first);
+            if (packet != null) {
+                return packet;
+            }
+        }
+        return null;
+    }
+
+    private Packet nextBinary(boolean binary) throws IOException {
+        long length = 0;
+        int digits = 0;
+        int b;
+        while ((b = mSource.readByte() & 0xFF) != 0xFF) {
+            if (b > 9 || ++digits > MAX_LENGTH_DIGITS) {
+                return fail();
+            }
+            length = length * 10 + b;
+        }
+        if (digits == 0 || length == 0 || length > Integer.MAX_VALUE) {
+            return fail();
+        }
+        if (binary) {
+            return Parser.decodePacket(mSource.readByteString(length));
+        }
+        // string packets in a binary payload are plain UTF-8, no byte-string round trip
+        return Parser.decodePacket(mSource.readUtf8(length));
+    }
+
+    private Packet nextText(int first) throws IOException {
+        long length = 0;
+        int digits = 0;
+        int c = first;
+        while (c != ':') {
+            if (c < '0' || c > '9' || ++digits > MAX_LENGTH_DIGITS) {
+                return fail();
+            }
+            length = length * 10 + (c - '0');
+            c = mSource.readByte() & 0xFF;
+        }
+        if (digits == 0 || length > Integer.MAX_VALUE) {
+            return fail();
+        }
+        if (length == 0) {
+            return null;
+        }
+
+        StringBuilder message = new StringBuilder((int) length);
+        while (message.length() < length) {
+            message.appendCodePoint(mSource.readUtf8CodePoint());
+        }
+        if (message.length() != length) {
+            return fail();
+        }
+
+        if (message.charAt(0) == 'b') {
+            int type = message.length() > 1 ? message.charAt(1) - '0' : Packet.ERROR;
+            ByteString data = ByteString.decodeBase64(message.substring(2));
+            if (!Packet.isValidType(type) || data == null) {
+                return fail();
+            }
+            return new Packet<>(type, data);
+        }
+        return Parser.decodePacket(message.toString());
+    }
+
+    private Packet fail() {
+        mFailed = true;
+        return new Packet<>(Packet.ERROR, "parser error");
+    }
+}
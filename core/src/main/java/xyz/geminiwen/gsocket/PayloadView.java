@@ -0,0 +1,74 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * A read-only window over part of a decoded frame. Lets callers inspect a packet payload
+ * without the {@link String#substring(int)} copy; {@link #toString()} materializes it once.
+ */
+public final class PayloadView implements CharSequence {
+
+    private final String mSource;
+    private final int mOffset;
+    private final int mLength;
+    private String mString;
+
+    /*package*/ PayloadView(String source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+        }
+        mSource = source;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= mLength) {
+            throw new IndexOutOfBoundsException("index " + index);
+        }
+        return mSource.charAt(mOffset + index);
+    }
+
+    @Override
+    public PayloadView subSequence(int start, int end) {
+        if (start < 0 || end > mLength || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        return new PayloadView(mSource, mOffset + start, end - start);
+    }
+
+    public boolean startsWith(String prefix) {
+        return prefix.length() <= mLength && mSource.startsWith(prefix, mOffset);
+    }
+
+    public int indexOf(char c, int fromIndex) {
+        int end = mOffset + mLength;
+        for (int i = mOffset + Math.max(fromIndex, 0); i < end; i++) {
+            if (mSource.charAt(i) == c) {
+                return i - mOffset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the viewed characters to {@code out} without materializing a String.
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        return out.append(mSource, mOffset, mOffset + mLength);
+    }
+
+    @Override
+    public String toString() {
+        if (mString == null) {
+            mString = mOffset == 0 && mLength == mSource.length()
+                    ? mSource
+                    : mSource.substring(mOffset, mOffset + mLength);
+        }
+        return mString;
+    }
+}
@@ -0,0 +1,396 @@
+package xyz.geminiwen.gsocket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * HTTP long-polling: a GET that the server holds open until it has packets, and a POST for
+ * outgoing packets. Both run over the client's keep-alive connection pool. Packets handed
+ * over while a POST is in flight are coalesced into the next payload.
+ */
+public class PollingTransport extends Transport {
+
+    public static final String NAME = "polling";
+
+    private static final MediaType TEXT = MediaType.parse("text/plain;charset=UTF-8");
+    private static final MediaType BINARY = MediaType.parse("application/octet-stream");
+    private static final AtomicInteger sRequestCount = new AtomicInteger();
+
+    // guarded by this
+    private final List<Packet> mPending = new ArrayList<>();
+    private long mPendingBytes;
+    private long mWritingBytes;
+    private Call mPollCall;
+    private Call mWriteCall;
+    private boolean mOpen;
+    private boolean mClosed;
+    private Runnable mOnPaused;
+
+    private final Compressor mCompressor;
+
+    public PollingTransport(OkHttpClient client, HttpUrl baseUrl, Callback callback) {
+        this(client, baseUrl, callback, null);
+    }
+
+    /**
+     * @param compressor compresses request bodies and inflates responses; null sends and
+     *                   reads everything as is
+     */
+    /*package*/ PollingTransport(OkHttpClient client, HttpUrl baseUrl, Callback callback,
+                                 Compressor compressor) {
+        super(client, baseUrl, callback);
+        mCompressor = compressor;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void open() {
+        poll();
+    }
+
+    @Override
+    protected HttpUrl url() {
+        // keeps caching proxies from answering a poll with a stale payload
+        return super.url().newBuilder()
+                .setQueryParameter("t", Long.toString(System.currentTimeMillis(), 36)
+                        + "-" + sRequestCount.getAndIncrement())
+                .build();
+    }
+
+    private void poll() {
+        Call call;
+        synchronized (this) {
+            if (mClosed || mOnPaused != null) {
+                return;
+            }
+            Request.Builder request = new Request.Builder().url(url());
+            if (mCompressor != null) {
+                mCompressor.acceptCompressed(request);
+            }
+            call = mPollCall = mClient.newCall(request.build());
+        }
+        call.enqueue(mPollCallback);
+    }
+
+    private final okhttp3.Callback mPollCallback = new okhttp3.Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+            fail(e, null);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            BufferedSource source = null;
+            try {
+                if (!response.isSuccessful()) {
+                    fail(new EngineIOException("xhr poll error " + response.code()), response);
+                    return;
+                }
+                source = mCompressor != null
+                        ? mCompressor.decompress(response) : response.body().source();
+                PayloadDecoder decoder = new PayloadDecoder(source);
+                Packet packet;
+                while ((packet = decoder.next()) != null) {
+                    if (!onPacket(packet)) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                fail(e, null);
+                return;
+            } finally {
+                if (source != null) {
+                    // ends the Inflater of a compressed response, which holds native memory
+                    try {
+                        source.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                response.close();
+            }
+
+            // poll again once the packets are handed on: the handshake has to set our sid
+            // first, and a slow event executor should slow polling down, not pile up packets
+            post(mPollDone);
+        }
+    };
+
+    private final Runnable mPollDone = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (PollingTransport.this) {
+                mPollCall = null;
+            }
+            if (!checkPaused()) {
+                poll();
+            }
+        }
+    };
+
+    private boolean onPacket(final Packet packet) {
+        onReceived();
+        MetricsListener metrics = mMetrics;
+        if (metrics != null) {
+            metrics.onPacketReceived(NAME, packet, SendQueue.sizeOf(packet) + 1, -1);
+        }
+        if (packet.type == Packet.CLOSE) {
+            onClosed();
+            return false;
+        }
+        if (packet.type == Packet.ERROR) {
+            fail(new EngineIOException("parser error"), null);
+            return false;
+        }
+
+        postPacket(new Runnable() {
+            @Override
+            public void run() {
+                mCallback.onPacket(PollingTransport.this, packet);
+            }
+        });
+
+        boolean opened = false;
+        synchronized (this) {
+            if (!mOpen && packet.type == Packet.OPEN) {
+                mOpen = opened = true;
+            }
+        }
+        if (opened) {
+            // the handshake has set our sid by now, so writes can start
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onOpen(PollingTransport.this);
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public void send(Packet... packets) {
+        synchronized (this) {
+            for (Packet packet : packets) {
+                mPending.add(packet);
+                mPendingBytes += SendQueue.sizeOf(packet);
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        Call call;
+        synchronized (this) {
+            if (mClosed || !mOpen || mWriteCall != null || mPending.isEmpty()) {
+                return;
+            }
+            Packet[] packets = mPending.toArray(new Packet[mPending.size()]);
+            mPending.clear();
+            mWritingBytes = mPendingBytes;
+
+            Request.Builder request = new Request.Builder().url(url());
+            try {
+                encode(packets, request);
+            } catch (UTF8Exception e) {
+                // only string packets encode as text and those never fail without utf8encode
+                throw new IllegalStateException(e);
+            }
+            call = mWriteCall = mClient.newCall(request.build());
+        }
+        call.enqueue(mWriteCallback);
+    }
+
+    private void encode(Packet[] packets, Request.Builder request) throws UTF8Exception {
+        MetricsListener metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        MediaType type = TEXT;
+        ByteString payload = null;
+        for (Packet packet : packets) {
+            if (packet.data != null && !(packet.data instanceof String)) {
+                Buffer buffer = new Buffer();
+                Parser.encodePayloadAsBinary(packets, buffer);
+                type = BINARY;
+                payload = buffer.readByteString();
+                break;
+            }
+        }
+        if (payload == null) {
+            payload = ByteString.encodeUtf8(
+                    Parser.encodePayload(packets, new StringBuilder()).toString());
+        }
+        if (metrics != null) {
+            long nanos = (System.nanoTime() - start) / packets.length;
+            for (Packet packet : packets) {
+                metrics.onPacketSent(NAME, packet, SendQueue.sizeOf(packet) + 1, nanos);
+            }
+        }
+        if (mCompressor != null) {
+            payload = mCompressor.compress(payload, request);
+        }
+        request.post(RequestBody.create(type, payload));
+    }
+
+    private final okhttp3.Callback mWriteCallback = new okhttp3.Callback() {
+        @Override
+        public void onFailure(Call call, IOException e) {
+            fail(e, null);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            try {
+                if (!response.isSuccessful()) {
+                    fail(new EngineIOException("xhr post error " + response.code()), response);
+                    return;
+                }
+            } finally {
+                response.close();
+            }
+            synchronized (PollingTransport.this) {
+                mWriteCall = null;
+                mPendingBytes -= mWritingBytes;
+                mWritingBytes = 0;
+            }
+            if (!checkPaused()) {
+                flush();
+            }
+        }
+    };
+
+    @Override
+    public synchronized long queueSize() {
+        return mPendingBytes;
+    }
+
+    @Override
+    public void pause(Runnable onPaused) {
+        synchronized (this) {
+            mOnPaused = onPaused;
+        }
+        checkPaused();
+    }
+
+    /**
+     * Runs the pause callback if a pause was asked for and nothing is in flight any more.
+     */
+    private boolean checkPaused() {
+        Runnable onPaused;
+        synchronized (this) {
+            onPaused = mOnPaused;
+            if (onPaused == null) {
+                return false;
+            }
+            if (mPollCall != null || mWriteCall != null || !mPending.isEmpty()) {
+                return true;
+            }
+            mOnPaused = null;
+        }
+        // after the packets of the last poll have been handed on
+        post(onPaused);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        boolean open;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            open = mOpen;
+            mOpen = false;
+        }
+        if (open) {
+            // let the server know right away instead of waiting for it to time us out
+            try {
+                Request.Builder request = new Request.Builder().url(url());
+                encode(new Packet[]{new Packet(Packet.CLOSE)}, request);
+                mClient.newCall(request.build()).enqueue(new okhttp3.Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        response.close();
+                    }
+                });
+            } catch (UTF8Exception e) {
+                // a bare CLOSE packet always encodes
+            }
+        }
+        onClosed();
+    }
+
+    @Override
+    public void cancel() {
+        fail(new EngineIOException("transport cancelled"), null);
+    }
+
+    private void onClosed() {
+        if (shutdown()) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onClose(PollingTransport.this);
+                }
+            });
+        }
+    }
+
+    private void fail(final Throwable t, final Response response) {
+        if (shutdown()) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onError(PollingTransport.this, t, response);
+                }
+            });
+        }
+    }
+
+    private boolean shutdown() {
+        Call poll;
+        Call write;
+        synchronized (this) {
+            if (mClosed) {
+                return false;
+            }
+            mClosed = true;
+            mOpen = false;
+            poll = mPollCall;
+            write = mWriteCall;
+            mPollCall = null;
+            mWriteCall = null;
+            mPending.clear();
+            mPendingBytes = 0;
+        }
+        if (mCompressor != null) {
+            mCompressor.release();
+        }
+        if (poll != null) {
+            poll.cancel();
+        }
+        if (write != null) {
+            write.cancel();
+        }
+        return true;
+    }
+}
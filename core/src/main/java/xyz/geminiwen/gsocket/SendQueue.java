@@ -0,0 +1,182 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import okio.ByteString;
+
+/**
+ * The send queue of a {@link WebSocket}, one FIFO lane per {@link WebSocket.Priority}. Packets
+ * keep their order within a lane; a higher lane is always polled first. The packets of one
+ * {@link WebSocket#send} call are one entry and are polled together, so nothing gets between a
+ * socket.io event and its attachments. A packet queued with a conflation key holds its place
+ * for that key: a newer packet with the key replaces it there until it is polled. Not
+ * thread-safe.
+ */
+/*package*/ final class SendQueue {
+
+    private static final WebSocket.Priority[] LANES = WebSocket.Priority.values();
+
+    // packets, Packet[]s for multi-packet sends and Slots for conflated ones
+    private final ArrayDeque<Object>[] mLanes;
+    private final Map<Object, Slot> mSlots = new HashMap<>();
+    private int mSize;
+
+    @SuppressWarnings("unchecked")
+    /*package*/ SendQueue() {
+        mLanes = new ArrayDeque[LANES.length];
+        for (int i = 0; i < mLanes.length; i++) {
+            mLanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Queues {@code packets} as one entry of {@code priority}'s lane.
+     */
+    /*package*/ void addAll(WebSocket.Priority priority, Packet[] packets) {
+        if (packets.length == 0) {
+            return;
+        }
+        mLanes[priority.ordinal()].add(packets.length == 1 ? packets[0] : packets.clone());
+        mSize += packets.length;
+    }
+
+    /**
+     * Replaces the packet queued for {@code key} in its place, or queues {@code packet} for
+     * it in {@code priority}'s lane if there is none.
+     */
+    /*package*/ void conflate(WebSocket.Priority priority, Object key, Packet packet) {
+        Slot slot = mSlots.get(key);
+        if (slot != null) {
+            slot.mPacket = packet;
+            return;
+        }
+        slot = new Slot(key, packet);
+        mSlots.put(key, slot);
+        mLanes[priority.ordinal()].add(slot);
+        mSize++;
+    }
+
+    /*package*/ boolean contains(Object key) {
+        return mSlots.containsKey(key);
+    }
+
+    /**
+     * Moves the next entry of {@code priority}'s lane, all of its packets, to {@code batch}.
+     *
+     * @return the payload bytes moved, or -1 if the lane is empty
+     */
+    /*package*/ long pollTo(WebSocket.Priority priority, List<Packet> batch) {
+        Object entry = mLanes[priority.ordinal()].poll();
+        if (entry == null) {
+            return -1;
+        }
+        if (entry instanceof Packet[]) {
+            long bytes = 0;
+            for (Packet packet : (Packet[]) entry) {
+                bytes += sizeOf(packet);
+                batch.add(packet);
+            }
+            mSize -= ((Packet[]) entry).length;
+            return bytes;
+        }
+        if (entry instanceof Slot) {
+            // once on its way, the next packet for the key queues anew
+            mSlots.remove(((Slot) entry).mKey);
+        }
+        Packet packet = unwrap(entry);
+        batch.add(packet);
+        mSize--;
+        return sizeOf(packet);
+    }
+
+    /*package*/ int size() {
+        return mSize;
+    }
+
+    /*package*/ boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Journals every queued entry in its lane ahead of what is journaled already, so they are
+     * taken again in queue order, highest lane first. Stops at the first entry the journal
+     * refuses.
+     *
+     * @throws EngineIOException if the journal refuses an entry
+     */
+    /*package*/ void prependTo(OutboundJournal journal) {
+        for (int i = mLanes.length - 1; i >= 0; i--) {
+            Iterator<Object> entries = mLanes[i].descendingIterator();
+            while (entries.hasNext()) {
+                journal.prepend(LANES[i], packetsOf(entries.next()));
+            }
+        }
+    }
+
+    /*package*/ void clear() {
+        for (ArrayDeque<Object> lane : mLanes) {
+            lane.clear();
+        }
+        mSlots.clear();
+        mSize = 0;
+    }
+
+    private static Packet unwrap(Object entry) {
+        return entry instanceof Slot ? ((Slot) entry).mPacket : (Packet) entry;
+    }
+
+    private static Packet[] packetsOf(Object entry) {
+        return entry instanceof Packet[] ? (Packet[]) entry : new Packet[]{unwrap(entry)};
+    }
+
+    /**
+     * The lane for packets handed to one {@link WebSocket#send} call, which are queued as one
+     * entry: control only if all of them are control packets, bulk if any message reaches
+     * {@code bulkThreshold} bytes.
+     */
+    /*package*/ static WebSocket.Priority classify(Packet[] packets, long bulkThreshold) {
+        WebSocket.Priority priority = WebSocket.Priority.CONTROL;
+        for (Packet packet : packets) {
+            if (packet.type != Packet.MESSAGE) {
+                continue;
+            }
+            if (sizeOf(packet) >= bulkThreshold) {
+                return WebSocket.Priority.BULK;
+            }
+            priority = WebSocket.Priority.INTERACTIVE;
+        }
+        return priority;
+    }
+
+    /**
+     * Payload size in bytes, counting a string's chars, which is exact for ASCII and close
+     * enough to pace on otherwise.
+     */
+    /*package*/ static long sizeOf(Packet packet) {
+        Object data = packet.data;
+        if (data instanceof String) {
+            return ((String) data).length();
+        }
+        if (data instanceof ByteString) {
+            return ((ByteString) data).size();
+        }
+        if (data instanceof byte[]) {
+            return ((byte[]) data).length;
+        }
+        return 0;
+    }
+
+    private static final class Slot {
+        final Object mKey;
+        Packet mPacket;
+
+        Slot(Object key, Packet packet) {
+            mKey = key;
+            mPacket = packet;
+        }
+    }
+}
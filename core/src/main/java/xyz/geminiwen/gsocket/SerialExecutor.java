@@ -0,0 +1,129 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks one at a time and in submission order on a possibly shared executor, so one
+ * connection's events stay ordered while many connections spread over a pool. A busy
+ * connection gives its pool thread back every {@value #BATCH} tasks so others get a turn.
+ * {@link #put} waits while {@code capacity} tasks are pending, which stalls the okhttp reader
+ * handing over frames instead of letting a slow consumer queue them without limit.
+ */
+/*package*/ final class SerialExecutor implements Executor {
+
+    private static final int BATCH = 64;
+
+    private final Executor mExecutor;
+    private final int mCapacity;
+    // guarded by itself
+    private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+    private boolean mScheduled;
+    private int mWaiting;
+    private Thread mDrainThread;
+
+    /*package*/ SerialExecutor(Executor executor, int capacity) {
+        mExecutor = executor;
+        mCapacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Queues {@code task} without waiting, for events that must not stall their thread.
+     */
+    @Override
+    public void execute(Runnable task) {
+        synchronized (mTasks) {
+            mTasks.add(task);
+            if (mScheduled) {
+                return;
+            }
+            mScheduled = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Queues {@code task}, first waiting while the queue is full. A task queueing more never
+     * waits for itself.
+     */
+    /*package*/ void put(Runnable task) {
+        synchronized (mTasks) {
+            boolean interrupted = false;
+            while (mTasks.size() >= mCapacity && mScheduled
+                    && mDrainThread != Thread.currentThread()) {
+                mWaiting++;
+                try {
+                    mTasks.wait();
+                } catch (InterruptedException e) {
+                    // queue it anyway, the frame has been read already
+                    interrupted = true;
+                    break;
+                } finally {
+                    mWaiting--;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        execute(task);
+    }
+
+    private void schedule() {
+        try {
+            mExecutor.execute(mDrain);
+        } catch (RejectedExecutionException e) {
+            synchronized (mTasks) {
+                mTasks.clear();
+                mScheduled = false;
+                mTasks.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable task;
+                synchronized (mTasks) {
+                    task = mTasks.poll();
+                    if (task == null) {
+                        mScheduled = false;
+                        return;
+                    }
+                    if (mWaiting > 0) {
+                        mTasks.notifyAll();
+                    }
+                    mDrainThread = Thread.currentThread();
+                }
+                boolean completed = false;
+                try {
+                    task.run();
+                    completed = true;
+                } finally {
+                    synchronized (mTasks) {
+                        mDrainThread = null;
+                    }
+                    if (!completed) {
+                        // keep the rest going after the exception propagates
+                        reschedule();
+                    }
+                }
+            }
+            reschedule();
+        }
+    };
+
+    private void reschedule() {
+        synchronized (mTasks) {
+            if (mTasks.isEmpty()) {
+                mScheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+}
@@ -0,0 +1,21 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * Converts application values to and from MESSAGE packet payloads. A payload is a String
+ * (sent as a text frame) or an {@link okio.ByteString} (sent as a binary frame).
+ *
+ * @see WebSocket#send(Object, Serializer)
+ * @see WebSocket#onMessage(Serializer)
+ */
+public interface Serializer<T> {
+
+    /**
+     * @throws EngineIOException if {@code value} cannot be represented
+     */
+    Object encode(T value);
+
+    /**
+     * @throws EngineIOException if {@code payload} is malformed
+     */
+    T decode(Object payload);
+}
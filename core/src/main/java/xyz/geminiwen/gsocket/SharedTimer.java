@@ -0,0 +1,36 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * One timer thread for every socket in the process: heartbeats, reconnect delays and send
+ * queue retries. Tasks must stay short and never block.
+ */
+/*package*/ final class SharedTimer {
+
+    private SharedTimer() {}
+
+    private static class Holder {
+        static final ScheduledThreadPoolExecutor sExecutor = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "gsocket-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // heartbeat timeouts are cancelled far more often than they fire
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    /*package*/ static ScheduledExecutorService get() {
+        return Holder.sExecutor;
+    }
+}
@@ -0,0 +1,354 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
+import rx.subjects.SerializedSubject;
+import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * A socket.io namespace. Every namespace of a {@link Manager} shares its engine.io connection.
+ */
+public class Socket {
+
+    private final Manager mManager;
+    private final String mNamespace;
+    private final long mAckTimeout;
+
+    private final AtomicInteger mAckIds = new AtomicInteger();
+    // guarded by itself
+    private final IntObjectMap<AckRequest> mAcks = new IntObjectMap<>();
+    // guarded by this
+    private final List<SocketPacket> mSendBuffer = new ArrayList<>();
+    private volatile boolean mConnected;
+    private volatile boolean mActive;
+    private boolean mConnectSent;
+
+    private final Subject<Event, Event> mEvents = new SerializedSubject<>(PublishSubject.<Event>create());
+    private final EventRouter mRouter = new EventRouter();
+    private final Subject<Boolean, Boolean> mConnection =
+            new SerializedSubject<>(BehaviorSubject.create(false));
+
+    /*package*/ Socket(Manager manager, String namespace, long ackTimeout) {
+        mManager = manager;
+        mNamespace = namespace;
+        mAckTimeout = ackTimeout;
+    }
+
+    public String namespace() {
+        return mNamespace;
+    }
+
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    /*package*/ boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Joins the namespace, opening the shared engine.io connection if needed. Events emitted
+     * before the server confirms are buffered and flushed once it does.
+     */
+    public Socket connect() {
+        if (!mActive) {
+            mActive = true;
+            mManager.open(this);
+        }
+        return this;
+    }
+
+    public void disconnect() {
+        if (!mActive) {
+            return;
+        }
+        mActive = false;
+        if (mConnected) {
+            mManager.send(packet(SocketPacket.DISCONNECT, null));
+        }
+        onDisconnect(new EngineIOException("socket disconnected"));
+        mManager.remove(this);
+    }
+
+    public void emit(String event, Object... args) {
+        send(packet(SocketPacket.EVENT, toArgs(event, args)));
+    }
+
+    /**
+     * Emits an event that asks for an acknowledgement. The event is sent on subscription and
+     * the returned Single succeeds with the ack arguments, or fails after
+     * {@link Options#ackTimeout} milliseconds.
+     */
+    public Single<JSONArray> emitWithAck(final String event, final Object... args) {
+        return Single.create(new Single.OnSubscribe<JSONArray>() {
+            @Override
+            public void call(SingleSubscriber<? super JSONArray> subscriber) {
+                final int id = mAckIds.getAndIncrement() & Integer.MAX_VALUE;
+                final AckRequest request = new AckRequest(subscriber);
+                synchronized (mAcks) {
+                    mAcks.put(id, request);
+                }
+                if (mAckTimeout > 0) {
+                    request.mTimeout = SharedTimer.get().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            AckRequest timedOut = removeAck(id);
+                            if (timedOut != null) {
+                                timedOut.mSubscriber.onError(new EngineIOException("ack timeout"));
+                            }
+                        }
+                    }, mAckTimeout, TimeUnit.MILLISECONDS);
+                }
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        AckRequest cancelled = removeAck(id);
+                        if (cancelled != null) {
+                            cancelled.cancelTimeout();
+                        }
+                    }
+                }));
+
+                SocketPacket packet = packet(SocketPacket.EVENT, toArgs(event, args));
+                packet.id = id;
+                send(packet);
+            }
+        });
+    }
+
+    /**
+     * Returns the events named {@code event}. A name ending in {@code *} matches every event
+     * starting with the part before it, and {@code "*"} alone matches all events. Events are
+     * routed through an index, so subscribers only see the events they asked for.
+     */
+    public Observable<Event> on(final String event) {
+        return Observable.create(new Observable.OnSubscribe<Event>() {
+            @Override
+            public void call(final Subscriber<? super Event> subscriber) {
+                mRouter.add(event, subscriber);
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        mRouter.remove(event, subscriber);
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * Returns every event received on this namespace.
+     */
+    public Observable<Event> onEvent() {
+        return mEvents;
+    }
+
+    /**
+     * Emits the connection state of the namespace, starting with the current one.
+     */
+    public Observable<Boolean> onConnectionChanged() {
+        return mConnection.distinctUntilChanged();
+    }
+
+    /*package*/ void sendAck(int id, Object... args) {
+        SocketPacket packet = packet(SocketPacket.ACK, toArray(args));
+        packet.id = id;
+        send(packet);
+    }
+
+    private void send(SocketPacket packet) {
+        synchronized (this) {
+            if (!mConnected) {
+                mSendBuffer.add(packet);
+                return;
+            }
+        }
+        mManager.send(packet);
+    }
+
+    /**
+     * Called whenever the engine.io session (re)opens. The server joins the root namespace by
+     * itself; every other namespace has to ask.
+     */
+    /*package*/ void onOpen() {
+        synchronized (this) {
+            if (!mActive || mConnected || mConnectSent || "/".equals(mNamespace)) {
+                return;
+            }
+            mConnectSent = true;
+        }
+        mManager.send(packet(SocketPacket.CONNECT, null));
+    }
+
+    /*package*/ void onPacket(SocketPacket packet) {
+        switch (packet.type) {
+            case SocketPacket.CONNECT:
+                onConnect();
+                break;
+            case SocketPacket.EVENT:
+                onEventPacket(packet);
+                break;
+            case SocketPacket.ACK:
+                onAckPacket(packet);
+                break;
+            case SocketPacket.DISCONNECT:
+                onDisconnect(new EngineIOException("server disconnect"));
+                break;
+            case SocketPacket.ERROR:
+                deliver(new Event(this, "error", asArray(packet.data), -1));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onConnect() {
+        List<SocketPacket> buffered;
+        synchronized (this) {
+            mConnected = true;
+            buffered = new ArrayList<>(mSendBuffer);
+            mSendBuffer.clear();
+        }
+        mConnection.onNext(true);
+        for (SocketPacket packet : buffered) {
+            mManager.send(packet);
+        }
+    }
+
+    private void onEventPacket(SocketPacket packet) {
+        String name = packet.event;
+        if (name == null) {
+            return;
+        }
+        if (!mEvents.hasObservers() && !mRouter.hasRoute(name)) {
+            // nobody listens: skip decoding the arguments
+            return;
+        }
+        if (!SocketParser.decodeData(packet)) {
+            // the same report an eagerly decoded packet would have produced
+            deliver(new Event(this, "error", asArray("parser error"), -1));
+            return;
+        }
+        if (!(packet.data instanceof JSONArray)) {
+            return;
+        }
+        JSONArray data = (JSONArray) packet.data;
+        JSONArray args = new JSONArray();
+        for (int i = 1; i < data.length(); i++) {
+            args.put(data.opt(i));
+        }
+        deliver(new Event(this, name, args, packet.id));
+    }
+
+    private void deliver(Event event) {
+        mRouter.route(event);
+        mEvents.onNext(event);
+    }
+
+    private void onAckPacket(SocketPacket packet) {
+        AckRequest request = removeAck(packet.id);
+        if (request == null) {
+            return;
+        }
+        request.cancelTimeout();
+        request.mSubscriber.onSuccess(asArray(packet.data));
+    }
+
+    /**
+     * The transport or the server ended the namespace session; pending acks can never arrive.
+     */
+    /*package*/ void onDisconnect(Throwable cause) {
+        Object[] pending;
+        synchronized (mAcks) {
+            pending = mAcks.clear();
+        }
+        boolean wasConnected;
+        synchronized (this) {
+            wasConnected = mConnected;
+            mConnected = false;
+            mConnectSent = false;
+            if (!mActive) {
+                mSendBuffer.clear();
+            }
+        }
+        for (Object request : pending) {
+            AckRequest ack = (AckRequest) request;
+            ack.cancelTimeout();
+            ack.mSubscriber.onError(cause);
+        }
+        if (wasConnected) {
+            mConnection.onNext(false);
+        }
+    }
+
+    private AckRequest removeAck(int id) {
+        synchronized (mAcks) {
+            return mAcks.remove(id);
+        }
+    }
+
+    private SocketPacket packet(int type, Object data) {
+        SocketPacket packet = new SocketPacket(type, data);
+        packet.nsp = mNamespace;
+        return packet;
+    }
+
+    private static JSONArray toArgs(String event, Object... args) {
+        JSONArray array = new JSONArray();
+        array.put(event);
+        for (Object arg : args) {
+            array.put(arg == null ? JSONObject.NULL : arg);
+        }
+        return array;
+    }
+
+    private static JSONArray asArray(Object data) {
+        if (data instanceof JSONArray) {
+            return (JSONArray) data;
+        }
+        JSONArray array = new JSONArray();
+        if (data != null) {
+            array.put(data);
+        }
+        return array;
+    }
+
+    private static JSONArray toArray(Object... args) {
+        JSONArray array = new JSONArray();
+        for (Object arg : args) {
+            array.put(arg == null ? JSONObject.NULL : arg);
+        }
+        return array;
+    }
+
+    private static final class AckRequest {
+        final SingleSubscriber<? super JSONArray> mSubscriber;
+        volatile Future mTimeout;
+
+        AckRequest(SingleSubscriber<? super JSONArray> subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        void cancelTimeout() {
+            Future timeout = mTimeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package xyz.geminiwen.gsocket;
+
+/**
+ * A socket.io packet, carried inside the data of an engine.io MESSAGE {@link Packet}.
+ */
+public class SocketPacket {
+
+    static final public int CONNECT = 0;
+    static final public int DISCONNECT = 1;
+    static final public int EVENT = 2;
+    static final public int ACK = 3;
+    static final public int ERROR = 4;
+    static final public int BINARY_EVENT = 5;
+    static final public int BINARY_ACK = 6;
+
+    private static final String[] sTypeNames = {
+            "connect", "disconnect", "event", "ack", "error", "binary_event", "binary_ack"
+    };
+
+    public int type;
+    public String nsp = "/";
+    public int id = -1;
+    public Object data;
+    public int attachments;
+
+    // the event name of an EVENT packet, read without decoding its arguments
+    /*package*/ String event;
+    // JSON data that has not been decoded yet, see SocketParser#decodeData
+    /*package*/ String rawData;
+
+    public SocketPacket(int type) {
+        this(type, null);
+    }
+
+    public SocketPacket(int type, Object data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    /*package*/ static boolean isValidType(int type) {
+        return type >= 0 && type < sTypeNames.length;
+    }
+
+    public static String typeName(int type) {
+        return isValidType(type) ? sTypeNames[type] : "unknown";
+    }
+
+    @Override
+    public String toString() {
+        return typeName(this.type) + " " + this.nsp + (this.id >= 0 ? " #" + this.id : "") + " : " + (this.rawData != null ? this.rawData : this.data);
+    }
+}
@@ -0,0 +1,228 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+/**
+ * Encodes and decodes socket.io protocol 4 packets:
+ * {@code <type>[<attachments>-][<nsp>,][<id>][<json data>]}.
+ */
+public class SocketParser {
+
+    public static final int PROTOCOL = 4;
+
+    private SocketParser() {}
+
+    public static String encode(SocketPacket packet) {
+        return encode(packet, new StringBuilder()).toString();
+    }
+
+    public static StringBuilder encode(SocketPacket packet, StringBuilder out) {
+        out.append((char) ('0' + packet.type));
+
+        if (packet.type == SocketPacket.BINARY_EVENT || packet.type == SocketPacket.BINARY_ACK) {
+            out.append(packet.attachments).append('-');
+        }
+
+        boolean hasNsp = packet.nsp != null && !"/".equals(packet.nsp);
+        if (hasNsp) {
+            out.append(packet.nsp);
+        }
+
+        if (packet.id >= 0) {
+            if (hasNsp) {
+                out.append(',');
+            }
+            out.append(packet.id);
+        }
+
+        if (packet.data != null) {
+            if (hasNsp && packet.id < 0) {
+                out.append(',');
+            }
+            out.append(packet.data);
+        }
+
+        return out;
+    }
+
+    /**
+     * Decodes a socket.io packet; malformed input yields an {@link SocketPacket#ERROR} packet.
+     */
+    public static SocketPacket decode(String data) {
+        return decode(data, false);
+    }
+
+    /**
+     * Decodes a socket.io packet. With {@code deferEvent}, an EVENT packet only has its event
+     * name read; the rest of its JSON is kept as text until {@link #decodeData} is called, so
+     * events nobody listens to are never parsed.
+     */
+    /*package*/ static SocketPacket decode(String data, boolean deferEvent) {
+        int length = data.length();
+        int type = length > 0 ? data.charAt(0) - '0' : -1;
+        if (!SocketPacket.isValidType(type)) {
+            return error();
+        }
+
+        SocketPacket packet = new SocketPacket(type);
+        int i = 1;
+
+        if (type == SocketPacket.BINARY_EVENT || type == SocketPacket.BINARY_ACK) {
+            int start = i;
+            while (i < length && data.charAt(i) != '-') {
+                if (!isDigit(data.charAt(i))) {
+                    return error();
+                }
+                i++;
+            }
+            if (i == length || i == start) {
+                return error();
+            }
+            try {
+                packet.attachments = Integer.parseInt(data.substring(start, i));
+            } catch (NumberFormatException e) {
+                return error();
+            }
+            i++;
+        }
+
+        if (i < length && data.charAt(i) == '/') {
+            int start = i;
+            while (i < length && data.charAt(i) != ',') {
+                i++;
+            }
+            packet.nsp = data.substring(start, i);
+            if (i < length) {
+                i++;
+            }
+        }
+
+        if (i < length && isDigit(data.charAt(i))) {
+            long id = 0;
+            while (i < length && isDigit(data.charAt(i))) {
+                id = id * 10 + (data.charAt(i++) - '0');
+                if (id > Integer.MAX_VALUE) {
+                    return error();
+                }
+            }
+            packet.id = (int) id;
+        }
+
+        if (i < length) {
+            if (type == SocketPacket.EVENT || type == SocketPacket.BINARY_EVENT) {
+                packet.event = eventName(data, i);
+            }
+            packet.rawData = data.substring(i);
+            boolean defer = deferEvent && type == SocketPacket.EVENT && packet.event != null;
+            if (!defer && !decodeData(packet)) {
+                return error();
+            }
+        }
+
+        return packet;
+    }
+
+    /**
+     * Parses the JSON a deferred packet still holds as text.
+     *
+     * @return false if it is malformed
+     */
+    /*package*/ static boolean decodeData(SocketPacket packet) {
+        String raw = packet.rawData;
+        if (raw == null) {
+            return true;
+        }
+        try {
+            JSONTokener tokener = new JSONTokener(raw);
+            packet.data = tokener.nextValue();
+            if (tokener.nextClean() != 0) {
+                // the packet is one JSON value, anything after it is garbage
+                return false;
+            }
+        } catch (JSONException e) {
+            return false;
+        }
+        packet.rawData = null;
+        return true;
+    }
+
+    /**
+     * Reads the first element of the JSON array starting at {@code start} as a string, without
+     * looking at the rest of the array.
+     *
+     * @return the event name, or null if the array does not start with a string
+     */
+    /*package*/ static String eventName(String data, int start) {
+        int length = data.length();
+        int i = skipWhitespace(data, start);
+        if (i == length || data.charAt(i) != '[') {
+            return null;
+        }
+        i = skipWhitespace(data, i + 1);
+        if (i == length || data.charAt(i) != '"') {
+            return null;
+        }
+        int begin = ++i;
+        StringBuilder name = null;
+        while (i < length) {
+            char c = data.charAt(i);
+            if (c == '"') {
+                return name == null ? data.substring(begin, i) : name.append(data, begin, i).toString();
+            }
+            if (c != '\\') {
+                i++;
+                continue;
+            }
+            if (name == null) {
+                name = new StringBuilder();
+            }
+            name.append(data, begin, i);
+            if (++i == length) {
+                return null;
+            }
+            char escaped = data.charAt(i++);
+            switch (escaped) {
+                case 'b': name.append('\b'); break;
+                case 'f': name.append('\f'); break;
+                case 'n': name.append('\n'); break;
+                case 'r': name.append('\r'); break;
+                case 't': name.append('\t'); break;
+                case 'u':
+                    if (i + 4 > length) {
+                        return null;
+                    }
+                    try {
+                        name.append((char) Integer.parseInt(data.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    i += 4;
+                    break;
+                default:
+                    name.append(escaped);
+                    break;
+            }
+            begin = i;
+        }
+        return null;
+    }
+
+    /**
+     * Only ASCII digits; {@link Character#isDigit} also takes other scripts' digits.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipWhitespace(String data, int i) {
+        while (i < data.length() && Character.isWhitespace(data.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static SocketPacket error() {
+        return new SocketPacket(SocketPacket.ERROR, "parser error");
+    }
+}
@@ -0,0 +1,238 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * A {@link JsonSerializer} that parses binary frames straight from their UTF-8 bytes, without
+ * first materializing the whole document as a String. Produces the same org.json types.
+ */
+public class StreamingJsonSerializer extends JsonSerializer {
+
+    public static final StreamingJsonSerializer INSTANCE = new StreamingJsonSerializer();
+
+    private static final int MAX_DEPTH = 256;
+    private static final ByteString STRING_END = ByteString.encodeUtf8("\"\\");
+
+    @Override
+    public Object decode(Object payload) {
+        if (!(payload instanceof ByteString)) {
+            return super.decode(payload);
+        }
+        try {
+            return read(new Buffer().write((ByteString) payload));
+        } catch (IOException | JSONException e) {
+            throw new EngineIOException("malformed json", e);
+        }
+    }
+
+    /**
+     * Reads one JSON document from {@code source}, which must hold nothing else.
+     */
+    public Object read(BufferedSource source) throws IOException, JSONException {
+        Object value = readValue(source, 0);
+        if (peek(source) != -1) {
+            throw new JSONException("trailing characters after json value");
+        }
+        return value;
+    }
+
+    private Object readValue(BufferedSource source, int depth) throws IOException, JSONException {
+        if (depth > MAX_DEPTH) {
+            throw new JSONException("json nested too deeply");
+        }
+        int c = peek(source);
+        switch (c) {
+            case '{':
+                return readObject(source, depth);
+            case '[':
+                return readArray(source, depth);
+            case '"':
+                source.skip(1);
+                return readString(source);
+            case 't':
+                expect(source, "true");
+                return Boolean.TRUE;
+            case 'f':
+                expect(source, "false");
+                return Boolean.FALSE;
+            case 'n':
+                expect(source, "null");
+                return JSONObject.NULL;
+            case -1:
+                throw new EOFException();
+            default:
+                return readNumber(source);
+        }
+    }
+
+    private JSONObject readObject(BufferedSource source, int depth)
+            throws IOException, JSONException {
+        source.skip(1);
+        JSONObject object = new JSONObject();
+        if (peek(source) == '}') {
+            source.skip(1);
+            return object;
+        }
+        while (true) {
+            if (peek(source) != '"') {
+                throw new JSONException("expected a name");
+            }
+            source.skip(1);
+            String name = readString(source);
+            if (peek(source) != ':') {
+                throw new JSONException("expected ':' after " + name);
+            }
+            source.skip(1);
+            object.put(name, readValue(source, depth + 1));
+
+            int c = peek(source);
+            source.skip(1);
+            if (c == '}') {
+                return object;
+            }
+            if (c != ',') {
+                throw new JSONException("unterminated object");
+            }
+        }
+    }
+
+    private JSONArray readArray(BufferedSource source, int depth)
+            throws IOException, JSONException {
+        source.skip(1);
+        JSONArray array = new JSONArray();
+        if (peek(source) == ']') {
+            source.skip(1);
+            return array;
+        }
+        while (true) {
+            array.put(readValue(source, depth + 1));
+
+            int c = peek(source);
+            source.skip(1);
+            if (c == ']') {
+                return array;
+            }
+            if (c != ',') {
+                throw new JSONException("unterminated array");
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been consumed. Runs without escapes
+     * are decoded in one go.
+     */
+    private static String readString(BufferedSource source) throws IOException, JSONException {
+        StringBuilder builder = null;
+        while (true) {
+            long end = source.indexOfElement(STRING_END);
+            if (end == -1) {
+                throw new JSONException("unterminated string");
+            }
+            String run = source.readUtf8(end);
+            byte c = source.readByte();
+            if (c == '"') {
+                return builder == null ? run : builder.append(run).toString();
+            }
+            if (builder == null) {
+                builder = new StringBuilder(run.length() + 16);
+            }
+            builder.append(run);
+            char escaped = (char) source.readByte();
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    try {
+                        builder.append((char) Integer.parseInt(source.readUtf8(4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new JSONException("invalid unicode escape");
+                    }
+                    break;
+                default:
+                    // \" \\ \/ and lenient anything else
+                    builder.append(escaped);
+                    break;
+            }
+        }
+    }
+
+    private static Object readNumber(BufferedSource source) throws IOException, JSONException {
+        StringBuilder digits = new StringBuilder();
+        boolean decimal = false;
+        while (source.request(1)) {
+            char c = (char) source.buffer().getByte(0);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c >= '0' && c <= '9') && c != '-' && c != '+') {
+                break;
+            }
+            digits.append(c);
+            source.skip(1);
+        }
+        if (digits.length() == 0) {
+            throw new JSONException("unexpected character");
+        }
+        String number = digits.toString();
+        try {
+            if (!decimal) {
+                long v = Long.parseLong(number);
+                if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE) {
+                    return (int) v;
+                }
+                return v;
+            }
+        } catch (NumberFormatException e) {
+            // too long for a long, fall through to double
+        }
+        try {
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw new JSONException("invalid number " + number);
+        }
+    }
+
+    private static void expect(BufferedSource source, String literal)
+            throws IOException, JSONException {
+        if (!source.rangeEquals(0, ByteString.encodeUtf8(literal))) {
+            throw new JSONException("expected " + literal);
+        }
+        source.skip(literal.length());
+    }
+
+    /**
+     * Skips whitespace and returns the next byte without consuming it, or -1 at the end.
+     */
+    private static int peek(BufferedSource source) throws IOException {
+        while (source.request(1)) {
+            byte c = source.buffer().getByte(0);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+            source.skip(1);
+        }
+        return -1;
+    }
+}
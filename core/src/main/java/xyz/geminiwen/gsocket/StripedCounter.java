@@ -0,0 +1,39 @@
+package xyz.geminiwen.gsocket;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent increments over cache-line separated cells, picked by
+ * thread id, and sums them on read. Stands in for LongAdder, which needs API 24.
+ */
+/*package*/ final class StripedCounter {
+
+    private static final int STRIPES = stripes();
+    // longs per cell: 8 x 8 bytes keeps every cell on its own cache line
+    private static final int PAD = 8;
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PAD);
+
+    /*package*/ void add(long delta) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        mCells.getAndAdd(stripe * PAD, delta);
+    }
+
+    /*package*/ void increment() {
+        add(1);
+    }
+
+    /*package*/ long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    private static int stripes() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = Integer.highestOneBit(Math.max(1, cpus * 2 - 1)) << 1;
+        return Math.min(stripes, 64);
+    }
+}
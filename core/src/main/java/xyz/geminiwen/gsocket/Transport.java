@@ -0,0 +1,183 @@
+package xyz.geminiwen.gsocket;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * One way of carrying engine.io packets to the server. A transport is used for a single
+ * connection attempt; {@link WebSocket} creates a new one to reconnect or upgrade.
+ */
+public abstract class Transport {
+
+    public interface Callback {
+        void onOpen(Transport transport);
+
+        void onPacket(Transport transport, Packet packet);
+
+        /**
+         * The transport closed cleanly, either side having asked for it.
+         */
+        void onClose(Transport transport);
+
+        /**
+         * The transport failed and is unusable. {@code response} is the failed HTTP response,
+         * if there was one.
+         */
+        void onError(Transport transport, Throwable t, Response response);
+    }
+
+    /*package*/ static final Callback NO_CALLBACK = new Callback() {
+        @Override
+        public void onOpen(Transport transport) {
+        }
+
+        @Override
+        public void onPacket(Transport transport, Packet packet) {
+        }
+
+        @Override
+        public void onClose(Transport transport) {
+        }
+
+        @Override
+        public void onError(Transport transport, Throwable t, Response response) {
+        }
+    };
+
+    protected final OkHttpClient mClient;
+    protected final HttpUrl mBaseUrl;
+    protected volatile Callback mCallback;
+    protected volatile String mSessionId;
+    // null unless Options.metrics is set
+    protected volatile MetricsListener mMetrics;
+    // name/value pairs added to requests that start a new session
+    private volatile String[] mHandshakeQuery;
+    // runs network events in order off okhttp's threads, null to handle them inline
+    private volatile SerialExecutor mEventExecutor;
+    // System.nanoTime() of the last packet read, before it waits on the event executor
+    private volatile long mReceivedAt = System.nanoTime();
+
+    protected Transport(OkHttpClient client, HttpUrl baseUrl, Callback callback) {
+        mClient = client;
+        mBaseUrl = baseUrl;
+        mCallback = callback;
+    }
+
+    public abstract String name();
+
+    public abstract void open();
+
+    /**
+     * Hands packets to the transport; they go out asynchronously, in order.
+     */
+    public abstract void send(Packet... packets) throws UTF8Exception;
+
+    /**
+     * Bytes handed to {@link #send} that have not been written to the network yet.
+     */
+    public abstract long queueSize();
+
+    /**
+     * Closes gracefully, reporting {@link Callback#onClose} when done.
+     */
+    public abstract void close();
+
+    /**
+     * Tears the transport down at once, reporting {@link Callback#onError}.
+     */
+    public abstract void cancel();
+
+    /**
+     * Runs {@code onPaused} once nothing is in flight any more, so another transport can take
+     * over without reordering packets.
+     */
+    public void pause(Runnable onPaused) {
+        onPaused.run();
+    }
+
+    /*package*/ void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /*package*/ void setMetrics(MetricsListener metrics) {
+        mMetrics = metrics;
+    }
+
+    /*package*/ void setEventExecutor(SerialExecutor executor) {
+        mEventExecutor = executor;
+    }
+
+    protected boolean hasEventExecutor() {
+        return mEventExecutor != null;
+    }
+
+    /**
+     * Handles a network event on the event executor, or right away without one.
+     */
+    protected void post(Runnable event) {
+        SerialExecutor executor = mEventExecutor;
+        if (executor != null) {
+            executor.execute(event);
+        } else {
+            event.run();
+        }
+    }
+
+    /**
+     * Like {@link #post}, for a packet just read: waits while the event executor is full,
+     * which holds up reading instead of queueing without limit.
+     */
+    protected void postPacket(Runnable event) {
+        SerialExecutor executor = mEventExecutor;
+        if (executor != null) {
+            executor.put(event);
+        } else {
+            event.run();
+        }
+    }
+
+    /**
+     * Records that a packet was read from the network, called on the reading thread.
+     */
+    protected void onReceived() {
+        mReceivedAt = System.nanoTime();
+    }
+
+    /**
+     * {@link System#nanoTime()} when the last packet was read, though it may still be waiting
+     * to be handled; so a pong queued behind other packets still shows the server is there.
+     */
+    /*package*/ long receivedAt() {
+        return mReceivedAt;
+    }
+
+    /*package*/ void setHandshakeQuery(String... namesAndValues) {
+        mHandshakeQuery = namesAndValues;
+    }
+
+    /*package*/ void setSessionId(String sessionId) {
+        mSessionId = sessionId;
+    }
+
+    protected HttpUrl url() {
+        HttpUrl.Builder builder = mBaseUrl.newBuilder().setQueryParameter("transport", name());
+        if (mSessionId != null) {
+            builder.setQueryParameter("sid", mSessionId);
+        } else if (mHandshakeQuery != null) {
+            String[] query = mHandshakeQuery;
+            for (int i = 0; i + 1 < query.length; i += 2) {
+                builder.setQueryParameter(query[i], query[i + 1]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Detaches the transport and drops it without any more callbacks.
+     */
+    /*package*/ void discard() {
+        mCallback = NO_CALLBACK;
+        cancel();
+    }
+}
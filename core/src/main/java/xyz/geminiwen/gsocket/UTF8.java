@@ -0,0 +1,240 @@
+package xyz.geminiwen.gsocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created by geminiwen on 2016/12/3.
+ *
+ * Converts between strings and engine.io "byte strings", where every char carries one UTF-8
+ * byte. All methods keep their state on the stack (or in a {@link Decoder} owned by the
+ * caller), so they are safe to call from any number of threads at once.
+ */
+
+public final class UTF8 {
+
+    private static final String INVALID_CONTINUATION_BYTE = "Invalid continuation byte";
+    private static final String INVALID_BYTE_INDEX = "Invalid byte index";
+
+    private UTF8 () {}
+
+    public static String encode(String string) throws UTF8Exception {
+        return encode(string, new StringBuilder(string.length())).toString();
+    }
+
+    /**
+     * Appends the UTF-8 bytes of {@code string} to {@code out}, one char per byte.
+     */
+    public static StringBuilder encode(CharSequence string, StringBuilder out) throws UTF8Exception {
+        int length = string.length();
+        int index = 0;
+        while (index < length) {
+            int codePoint = codePointAt(string, index, length);
+            index += Character.charCount(codePoint);
+            if ((codePoint & 0xFFFFFF80) == 0) {
+                out.append((char) codePoint);
+            } else if ((codePoint & 0xFFFFF800) == 0) {
+                out.append((char) (((codePoint >> 6) & 0x1F) | 0xC0));
+                out.append((char) continuationByte(codePoint, 0));
+            } else if ((codePoint & 0xFFFF0000) == 0) {
+                checkScalarValue(codePoint);
+                out.append((char) (((codePoint >> 12) & 0x0F) | 0xE0));
+                out.append((char) continuationByte(codePoint, 6));
+                out.append((char) continuationByte(codePoint, 0));
+            } else {
+                out.append((char) (((codePoint >> 18) & 0x07) | 0xF0));
+                out.append((char) continuationByte(codePoint, 12));
+                out.append((char) continuationByte(codePoint, 6));
+                out.append((char) continuationByte(codePoint, 0));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes the UTF-8 bytes of {@code string} into {@code out}.
+     *
+     * @throws java.nio.BufferOverflowException if {@code out} runs out of room
+     */
+    public static void encode(CharSequence string, ByteBuffer out) throws UTF8Exception {
+        int length = string.length();
+        int index = 0;
+        while (index < length) {
+            int codePoint = codePointAt(string, index, length);
+            index += Character.charCount(codePoint);
+            if ((codePoint & 0xFFFFFF80) == 0) {
+                out.put((byte) codePoint);
+            } else if ((codePoint & 0xFFFFF800) == 0) {
+                out.put((byte) (((codePoint >> 6) & 0x1F) | 0xC0));
+                out.put((byte) continuationByte(codePoint, 0));
+            } else if ((codePoint & 0xFFFF0000) == 0) {
+                checkScalarValue(codePoint);
+                out.put((byte) (((codePoint >> 12) & 0x0F) | 0xE0));
+                out.put((byte) continuationByte(codePoint, 6));
+                out.put((byte) continuationByte(codePoint, 0));
+            } else {
+                out.put((byte) (((codePoint >> 18) & 0x07) | 0xF0));
+                out.put((byte) continuationByte(codePoint, 12));
+                out.put((byte) continuationByte(codePoint, 6));
+                out.put((byte) continuationByte(codePoint, 0));
+            }
+        }
+    }
+
+    /**
+     * Number of bytes {@code string} takes in UTF-8, without encoding it. A lone surrogate
+     * counts as the three bytes of U+FFFD that okhttp writes in its place.
+     */
+    public static long encodedLength(CharSequence string) {
+        int length = string.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                // two chars, four bytes
+                bytes += 2;
+                i++;
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    public static String decode(String byteString) throws UTF8Exception {
+        return decode((CharSequence) byteString);
+    }
+
+    public static String decode(CharSequence byteString) throws UTF8Exception {
+        StringBuilder out = new StringBuilder(byteString.length());
+        Decoder decoder = new Decoder();
+        decoder.decode(byteString, out);
+        decoder.finish();
+        return out.toString();
+    }
+
+    public static String decode(ByteBuffer bytes) throws UTF8Exception {
+        StringBuilder out = new StringBuilder(bytes.remaining());
+        Decoder decoder = new Decoder();
+        decoder.decode(bytes, out);
+        decoder.finish();
+        return out.toString();
+    }
+
+    /**
+     * Incremental decoder for input that arrives in chunks. A multi-byte sequence may be split
+     * across calls; {@link #finish()} reports a sequence left incomplete at the end of input.
+     * An instance is not thread-safe, but distinct instances are fully independent.
+     */
+    public static final class Decoder {
+        private int mCodePoint;
+        private int mSequenceLength;
+        private int mPending;
+
+        public void decode(CharSequence chunk, StringBuilder out) throws UTF8Exception {
+            int length = chunk.length();
+            for (int i = 0; i < length; i++) {
+                accept(chunk.charAt(i) & 0xFF, out);
+            }
+        }
+
+        public void decode(ByteBuffer chunk, StringBuilder out) throws UTF8Exception {
+            while (chunk.hasRemaining()) {
+                accept(chunk.get() & 0xFF, out);
+            }
+        }
+
+        public void finish() throws UTF8Exception {
+            if (mPending != 0) {
+                reset();
+                throw new UTF8Exception(INVALID_BYTE_INDEX);
+            }
+        }
+
+        public void reset() {
+            mCodePoint = 0;
+            mSequenceLength = 0;
+            mPending = 0;
+        }
+
+        private void accept(int value, StringBuilder out) throws UTF8Exception {
+            if (mPending == 0) {
+                if ((value & 0x80) == 0) {
+                    out.append((char) value);
+                    return;
+                }
+                if ((value & 0xE0) == 0xC0) {
+                    start(value & 0x1F, 2);
+                } else if ((value & 0xF0) == 0xE0) {
+                    start(value & 0x0F, 3);
+                } else if ((value & 0xF8) == 0xF0) {
+                    start(value & 0x07, 4);
+                } else {
+                    throw invalidContinuation();
+                }
+                return;
+            }
+
+            if ((value & 0xC0) != 0x80) {
+                throw invalidContinuation();
+            }
+            mCodePoint = (mCodePoint << 6) | (value & 0x3F);
+            if (--mPending > 0) {
+                return;
+            }
+
+            int codePoint = mCodePoint;
+            int sequenceLength = mSequenceLength;
+            reset();
+            if (sequenceLength == 2 && codePoint < 0x80
+                    || sequenceLength == 3 && codePoint < 0x0800
+                    || sequenceLength == 4 && (codePoint < 0x010000 || codePoint > 0x10FFFF)) {
+                throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+            }
+            if (sequenceLength == 3) {
+                checkScalarValue(codePoint);
+            }
+            out.appendCodePoint(codePoint);
+        }
+
+        private void start(int bits, int sequenceLength) {
+            mCodePoint = bits;
+            mSequenceLength = sequenceLength;
+            mPending = sequenceLength - 1;
+        }
+
+        private UTF8Exception invalidContinuation() {
+            reset();
+            return new UTF8Exception(INVALID_CONTINUATION_BYTE);
+        }
+    }
+
+    private static int codePointAt(CharSequence string, int index, int length) {
+        char high = string.charAt(index);
+        if (Character.isHighSurrogate(high) && index + 1 < length) {
+            char low = string.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return high;
+    }
+
+    private static int continuationByte(int codePoint, int shift) {
+        return ((codePoint >> shift) & 0x3F) | 0x80;
+    }
+
+    private static void checkScalarValue(int codePoint) throws UTF8Exception {
+        if (codePoint >= 0xD800 && codePoint <= 0xDFFF) {
+            throw new UTF8Exception(
+                    "Lone surrogate U+" + Integer.toHexString(codePoint).toUpperCase() +
+                            " is not a scalar value"
+            );
+        }
+    }
+}
@@ -0,0 +1,1150 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+import rx.Completable;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subjects.BehaviorSubject;
+import rx.subjects.SerializedSubject;
+import rx.subjects.Subject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Created by geminiwen on 2016/12/3.
+ */
+
+public class WebSocket {
+    public static final String NAME = WebSocket.class.getSimpleName();
+    private static final String ENGINE_IO_PROTOCOL = "3";
+    private static final long DRAIN_RETRY_DELAY = 10;
+    private static final String PROBE = "probe";
+
+    /**
+     * Outbound priority classes. The send queue hands control packets to the transport first,
+     * then interactive ones, then bulk ones; bulk traffic is fed to okhttp only
+     * {@link Options#bulkChunkBytes} at a time so it cannot hold up the others for long.
+     */
+    public enum Priority {
+        CONTROL, INTERACTIVE, BULK
+    }
+
+    protected enum ReadyState {
+        OPENING, OPEN, CLOSED, PAUSED;
+
+        @Override
+        public String toString() {
+            return super.toString().toLowerCase();
+        }
+    }
+
+
+    private volatile ReadyState mReadyState;
+    private ScheduledExecutorService mHeartbeatExecutor = SharedTimer.get();
+    private Future mPingIntervalTimer;
+    private Future mPingTimeoutTimer;
+    private long mPingSentAt;
+    private volatile long mPingRtt = -1;
+
+    private volatile Transport mTransport;
+    private Transport mProbe;
+    private volatile boolean mWrittable = true;
+    private final Subject<Boolean, Boolean> mWritableSubject =
+            new SerializedSubject<>(BehaviorSubject.create(true));
+    private final Object mSendLock = new Object();
+    private final SendQueue mSendQueue = new SendQueue();
+    private boolean mDrainScheduled;
+    // session resume, null unless Options.resumeOffsetExtractor is set
+    private final OffsetExtractor mOffsetExtractor;
+    // guarded by itself
+    private final OffsetWindow mReceivedOffsets;
+    private volatile long mLastOffset = -1;
+    // whether the handshake in progress asks the server to resume the previous session
+    private volatile boolean mResumeRequested;
+    // packets sent while offline, null unless Options.journalFile is set
+    private final OutboundJournal mJournal;
+    private boolean mReplayScheduled;
+    private Options mOptions;
+    private final CompressionStats mCompressionStats = new CompressionStats();
+    private final MetricsListener mMetrics;
+    // serializes this socket's network events on Options.decodeExecutor, null to handle them
+    // on okhttp's threads
+    private final SerialExecutor mEventExecutor;
+    private HttpUrl mHttpUrl;
+
+    /**
+     * Receives every decoded packet. Each frame is decoded once and the same {@link Packet}
+     * instance is handed to all listeners, on the thread that read the frame or, with
+     * {@link Options#decodeExecutor} set, on that executor. A CLOSE packet is also delivered
+     * whenever the transport drops, before any reconnection attempt.
+     */
+    public interface PacketListener {
+        void onPacket(Packet packet);
+
+        /**
+         * Called once the connection is gone for good: closed with reconnection disabled or
+         * after {@link Options#reconnectionAttempts} failed attempts.
+         */
+        void onError(Throwable t);
+    }
+
+    // copy-on-write: dispatch iterates a snapshot, so (un)subscribing never blocks the reader
+    private final List<WebSocketListener> mSocketListeners = new CopyOnWriteArrayList<>();
+    private final List<PacketListener> mPacketListeners = new CopyOnWriteArrayList<>();
+    private volatile Observable<Packet> mSharedPackets;
+
+    // kept across reconnects, offered to the server while it may still hold the session
+    private volatile String mSessionId;
+    private long mPingInterval;
+    private long mPingTimeout;
+    private volatile long mLastPacketAt;
+    private volatile boolean mHandshaken;
+
+    private OkHttpClient mHttpClient;
+    private final Backoff mBackoff;
+    private Future mReconnectTimer;
+    private volatile boolean mClosedByUser;
+
+    public WebSocket(Options opts) {
+        mOptions = opts;
+        mMetrics = opts.metrics;
+        mEventExecutor = opts.decodeExecutor != null
+                ? new SerialExecutor(opts.decodeExecutor, opts.decodeQueueCapacity) : null;
+        mOffsetExtractor = opts.resumeOffsetExtractor;
+        mReceivedOffsets = mOffsetExtractor != null ? new OffsetWindow(opts.resumeWindowSize) : null;
+        HttpUrl.Builder urlBuilder = new HttpUrl.Builder();
+        urlBuilder.host(opts.host)
+                .port(opts.port)
+                .scheme(opts.scheme)
+                .addPathSegments(opts.path)
+                .addQueryParameter("EIO", ENGINE_IO_PROTOCOL);
+        mHttpUrl = urlBuilder.build();
+        mBackoff = new Backoff(opts.reconnectionDelay, opts.reconnectionDelayMax, opts.randomizationFactor);
+        if (opts.journalFile != null) {
+            try {
+                mJournal = new OutboundJournal(opts.journalFile, opts.journalMaxBytes, opts.journalEviction);
+            } catch (IOException e) {
+                throw new EngineIOException("cannot open journal " + opts.journalFile, e);
+            }
+        } else {
+            mJournal = null;
+        }
+    }
+
+    /**
+     * Opens the connection if it is not open or opening yet. Subscribing to {@link #onPacket()}
+     * does this implicitly.
+     */
+    public void open() {
+        openIfNeed();
+    }
+
+    /**
+     * Whether the transport is open and the engine.io handshake has completed.
+     */
+    public boolean isOpen() {
+        return mReadyState == ReadyState.OPEN && mHandshaken;
+    }
+
+    public String getSessionId() {
+        return mSessionId;
+    }
+
+    /**
+     * Name of the transport currently carrying packets, or null before the first open.
+     */
+    public String getTransportName() {
+        Transport transport = mTransport;
+        return transport == null ? null : transport.name();
+    }
+
+    /**
+     * Bytes before and after compression over the life of this socket; see
+     * {@link Options#compression}.
+     */
+    public CompressionStats getCompressionStats() {
+        return mCompressionStats;
+    }
+
+    public void addSocketListener(WebSocketListener l) {
+        this.mSocketListeners.add(l);
+    }
+
+    public void removeSocketListener(WebSocketListener l) {
+        this.mSocketListeners.remove(l);
+    }
+
+    public void addPacketListener(PacketListener l) {
+        this.mPacketListeners.add(l);
+    }
+
+    public void removePacketListener(PacketListener l) {
+        this.mPacketListeners.remove(l);
+    }
+
+    /**
+     * Records the offset of a message and tells whether it was seen before, which happens when
+     * a resumed session replays messages that arrived just before the connection dropped.
+     */
+    private boolean isDuplicate(Packet packet) {
+        long offset = mOffsetExtractor.offsetOf(packet);
+        if (offset < 0) {
+            return false;
+        }
+        synchronized (mReceivedOffsets) {
+            if (!mReceivedOffsets.add(offset)) {
+                return true;
+            }
+            if (offset > mLastOffset) {
+                mLastOffset = offset;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the offsets received, once a session starts that does not continue the one
+     * they came from: its offsets may start over.
+     */
+    private void resetOffsets() {
+        if (mOffsetExtractor == null) {
+            return;
+        }
+        synchronized (mReceivedOffsets) {
+            mReceivedOffsets.clear();
+            mLastOffset = -1;
+        }
+    }
+
+    /**
+     * Highest message offset received, or -1; see {@link Options#resumeOffsetExtractor}.
+     */
+    public long getLastOffset() {
+        return mLastOffset;
+    }
+
+    /*package*/ void dispatchPacket(Packet packet) {
+        mLastPacketAt = System.currentTimeMillis();
+        if (mOffsetExtractor != null && packet.type == Packet.MESSAGE && isDuplicate(packet)) {
+            return;
+        }
+        onPacketInternal(packet);
+        for (PacketListener l : mPacketListeners) {
+            l.onPacket(packet);
+        }
+    }
+    private synchronized void openIfNeed() {
+        if (this.mReadyState == ReadyState.CLOSED || this.mReadyState == null) {
+            this.mClosedByUser = false;
+            this.mReadyState = ReadyState.OPENING;
+            this.doOpen();
+        }
+    }
+
+    protected synchronized void doOpen() {
+        OkHttpClient client = mHttpClient;
+
+        if (client == null) {
+            client = mOptions.httpClient;
+        }
+
+        if (client == null) {
+            client = IO.defaultHttpClient();
+        }
+        // reconnects go through the same client, and so the same connection pool
+        mHttpClient = client;
+
+        Transport transport = createTransport(mOptions.transports[0], mTransportCallback);
+        mResumeRequested = false;
+        if (mSessionId != null && canRejoin(mTransport, transport)) {
+            transport.setSessionId(mSessionId);
+        } else if (mSessionId != null && mOffsetExtractor != null) {
+            // the server has dropped the session; ask it to replay what we missed
+            mResumeRequested = true;
+            transport.setHandshakeQuery(
+                    mOptions.resumeSidParameter, mSessionId,
+                    mOptions.resumeOffsetParameter, Long.toString(mLastOffset));
+        }
+        mTransport = transport;
+        transport.open();
+    }
+
+    private Transport createTransport(String name, Transport.Callback callback) {
+        Transport transport;
+        if (PollingTransport.NAME.equals(name)) {
+            Compressor compressor = mOptions.compression
+                    ? new Compressor(mOptions.compressionThreshold, mCompressionStats) : null;
+            transport = new PollingTransport(mHttpClient, mHttpUrl, callback, compressor);
+        } else if (WebSocketTransport.NAME.equals(name)) {
+            transport = new WebSocketTransport(mHttpClient, mHttpUrl, callback, mSocketListenerTap);
+        } else {
+            throw new IllegalArgumentException("unknown transport " + name);
+        }
+        transport.setMetrics(mMetrics);
+        transport.setEventExecutor(mEventExecutor);
+        return transport;
+    }
+
+    /**
+     * The server drops a session once it has heard nothing for pingInterval + pingTimeout, so
+     * the sid is only worth offering within that window.
+     */
+    private boolean isSessionAlive() {
+        return System.currentTimeMillis() - mLastPacketAt < mPingInterval + mPingTimeout;
+    }
+
+    /**
+     * Whether {@code next} can carry on the session of {@code previous} by its sid. Only a
+     * polling session outlives its transport, and a websocket joins a session only through the
+     * upgrade probe, so anything else handshakes afresh instead of costing a 400 round trip.
+     */
+    private boolean canRejoin(Transport previous, Transport next) {
+        return previous != null && PollingTransport.NAME.equals(previous.name())
+                && PollingTransport.NAME.equals(next.name()) && isSessionAlive();
+    }
+
+    /**
+     * Closes the connection for good; no reconnection is attempted. {@link #open()} opens a new
+     * one, and subscribers of {@link #onPacket()} keep receiving on it. The packet stream is
+     * shared, so a new subscriber only opens a connection by itself once all earlier ones have
+     * unsubscribed; while any is left, it joins the closed stream until {@link #open()}.
+     */
+    public void close() {
+        synchronized (this) {
+            mClosedByUser = true;
+            cancelReconnect();
+            cancelHeartbeat();
+            mReadyState = ReadyState.CLOSED;
+            mHandshaken = false;
+            // the server ends the session when we close it, so the next open starts afresh
+            mSessionId = null;
+            resetOffsets();
+        }
+        doClose();
+    }
+
+    private synchronized void scheduleReconnect() {
+        if (mClosedByUser || mReconnectTimer != null) {
+            return;
+        }
+        discardProbe();
+        if (!mOptions.reconnection || mBackoff.attempts() >= mOptions.reconnectionAttempts) {
+            mBackoff.reset();
+            synchronized (mSendLock) {
+                if (mJournal != null) {
+                    try {
+                        // keep what was still queued for the next session, ahead of anything
+                        // journaled since the disconnect
+                        mSendQueue.prependTo(mJournal);
+                    } catch (EngineIOException e) {
+                        onError("Journal Error", e);
+                    }
+                }
+                mSendQueue.clear();
+            }
+            EngineIOException err = new EngineIOException("Transport closed");
+            for (PacketListener l : mPacketListeners) {
+                l.onError(err);
+            }
+            return;
+        }
+
+        // hold outgoing packets in the send queue until the new transport opens
+        mReadyState = ReadyState.OPENING;
+        long delay = mBackoff.duration();
+        if (mMetrics != null) {
+            mMetrics.onReconnectScheduled(mBackoff.attempts(), delay);
+        }
+        mReconnectTimer = mHeartbeatExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (WebSocket.this) {
+                    mReconnectTimer = null;
+                    if (mClosedByUser) {
+                        return;
+                    }
+                    doOpen();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Skips the rest of the backoff delay of a pending reconnection attempt, e.g. once the
+     * platform reports that the network is back. Does nothing unless one is pending.
+     */
+    public synchronized void reconnectNow() {
+        if (mReconnectTimer == null || mClosedByUser) {
+            return;
+        }
+        cancelReconnect();
+        mBackoff.reset();
+        doOpen();
+    }
+
+    private synchronized void cancelReconnect() {
+        if (mReconnectTimer != null) {
+            mReconnectTimer.cancel(false);
+            mReconnectTimer = null;
+        }
+    }
+
+    /**
+     * Queues packets for sending. Packets sent while the transport is still opening are held
+     * until it opens; the queue is bounded by {@link Options#sendQueueCapacity}, use
+     * {@link #awaitWritable()} to wait for room instead of overflowing it. With
+     * {@link Options#journalFile} set, packets sent while disconnected, even after
+     * {@link #close()}, are journaled instead and replayed after the next handshake.
+     * <p>
+     * The packets of one call go out together in one {@link Priority} lane: bulk if a message
+     * reaches {@link Options#bulkThreshold} bytes, control if there are only control packets,
+     * interactive otherwise. With {@link Options#conflationKeyExtractor} set, a single message
+     * replaces the queued one with the same key instead of queueing behind it.
+     */
+    public void send(Packet... packets) {
+        send(SendQueue.classify(packets, mOptions.bulkThreshold), packets);
+    }
+
+    /**
+     * Like {@link #send(Packet...)} in the given lane. Packets in a higher lane may overtake
+     * those queued earlier in a lower one.
+     */
+    public void send(Priority priority, Packet... packets) {
+        synchronized (mSendLock) {
+            if (mJournal != null && mustJournal()) {
+                mJournal.append(priority, packets, null);
+                return;
+            }
+            if (this.mReadyState != ReadyState.OPENING && this.mReadyState != ReadyState.OPEN) {
+                throw new RuntimeException("Transport not open");
+            }
+            Object key = conflationKey(packets);
+            if (key != null && mSendQueue.contains(key)) {
+                mSendQueue.conflate(priority, key, packets[0]);
+                return;
+            }
+            if (mSendQueue.size() + packets.length > mOptions.sendQueueCapacity) {
+                throw new EngineIOException("Send queue full");
+            }
+            if (key != null) {
+                mSendQueue.conflate(priority, key, packets[0]);
+            } else {
+                mSendQueue.addAll(priority, packets);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * The key a single message sent on its own conflates under, see
+     * {@link Options#conflationKeyExtractor}.
+     */
+    private Object conflationKey(Packet[] packets) {
+        KeyExtractor keys = mOptions.conflationKeyExtractor;
+        if (keys == null || packets.length != 1 || packets[0].type != Packet.MESSAGE) {
+            return null;
+        }
+        return keys.keyOf(packets[0]);
+    }
+
+    /**
+     * Like {@link #send}, but a packet that has to be journaled is dropped if one with the
+     * same {@code messageId} is journaled already, so retries while offline are sent once.
+     * Without a journal the id is ignored.
+     */
+    public void sendDurable(String messageId, Packet packet) {
+        synchronized (mSendLock) {
+            if (mJournal != null && mustJournal()) {
+                mJournal.append(SendQueue.classify(new Packet[]{packet}, mOptions.bulkThreshold),
+                        new Packet[]{packet}, messageId);
+                return;
+            }
+        }
+        send(packet);
+    }
+
+    /**
+     * Whether a packet sent now has to go through the journal: while there is no session to
+     * send it on, and while older journaled packets are still being replayed.
+     */
+    private boolean mustJournal() {
+        boolean online = (mReadyState == ReadyState.OPEN || mReadyState == ReadyState.PAUSED)
+                && mHandshaken;
+        if (online && !mJournal.isEmpty()) {
+            scheduleReplay(0);
+        }
+        return !online || !mJournal.isEmpty();
+    }
+
+    /**
+     * Moves journaled packets into the send queue a batch at a time, pacing itself on the send
+     * queue and the transport buffer so a large journal never sits in memory, and never on an
+     * okhttp thread. Must hold mSendLock.
+     */
+    private void scheduleReplay(long delay) {
+        if (mReplayScheduled) {
+            return;
+        }
+        mReplayScheduled = true;
+        mHeartbeatExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replayJournal();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void replayJournal() {
+        synchronized (mSendLock) {
+            mReplayScheduled = false;
+            if (mReadyState != ReadyState.OPEN || !mHandshaken || mJournal.isEmpty()) {
+                // the next handshake picks it up again
+                return;
+            }
+            if (mSendQueue.size() >= mOptions.sendBatchSize
+                    || mTransport.queueSize() >= mOptions.sendHighWaterMark) {
+                scheduleReplay(DRAIN_RETRY_DELAY);
+                return;
+            }
+            // later sends are journaled until the journal is empty, so they cannot get ahead
+            mJournal.drainTo(mSendQueue, mOptions.sendBatchSize);
+            if (!mJournal.isEmpty()) {
+                scheduleReplay(0);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Encodes {@code value} with {@code serializer} and queues it as a MESSAGE packet, in a
+     * binary frame if the serializer produces bytes.
+     */
+    public <T> void send(T value, Serializer<? super T> serializer) {
+        send(new Packet<>(Packet.MESSAGE, serializer.encode(value)));
+    }
+
+    /**
+     * Emits whether {@link #send} can take more packets without overflowing, starting with the
+     * current state.
+     */
+    public Observable<Boolean> onWritableChanged() {
+        return mWritableSubject.distinctUntilChanged();
+    }
+
+    /**
+     * Completes as soon as the send queue has room and okhttp is below
+     * {@link Options#sendHighWaterMark}.
+     */
+    public Completable awaitWritable() {
+        return Completable.fromObservable(mWritableSubject.first(new Func1<Boolean, Boolean>() {
+            @Override
+            public Boolean call(Boolean writable) {
+                return writable;
+            }
+        }));
+    }
+
+    private void drain() {
+        synchronized (mSendLock) {
+            if (this.mReadyState == ReadyState.OPEN && !mSendQueue.isEmpty()) {
+                List<Packet> batch = nextBatch(mTransport.queueSize());
+                if (!batch.isEmpty()) {
+                    try {
+                        this.write(batch.toArray(new Packet[batch.size()]));
+                    } catch (UTF8Exception e) {
+                        onError("Encode Error", e);
+                    }
+                }
+                if (!mSendQueue.isEmpty()) {
+                    // an empty batch means okhttp is full: poll until it has written some out
+                    scheduleDrain(batch.isEmpty() ? DRAIN_RETRY_DELAY : 0);
+                }
+                if (mMetrics != null) {
+                    mMetrics.onQueueSize(mSendQueue.size(), mTransport.queueSize());
+                }
+            }
+            if (mJournal != null && mReadyState == ReadyState.OPEN && mHandshaken
+                    && !mJournal.isEmpty()) {
+                scheduleReplay(0);
+            }
+        }
+        updateWritable();
+    }
+
+    /**
+     * Takes about {@link Options#sendBatchSize} packets, highest lane first. Control packets
+     * always go; interactive ones while okhttp holds less than {@link Options#sendHighWaterMark}
+     * bytes, and bulk ones while it holds less than {@link Options#bulkChunkBytes}, so a packet
+     * from a higher lane never waits behind more than about one chunk of bulk data. The packets
+     * of one send call are taken together even if that overshoots the limits. Must hold
+     * mSendLock.
+     */
+    private List<Packet> nextBatch(long transportBytes) {
+        List<Packet> batch = new ArrayList<>(Math.min(mSendQueue.size(), mOptions.sendBatchSize));
+        while (batch.size() < mOptions.sendBatchSize) {
+            if (mSendQueue.pollTo(Priority.CONTROL, batch) < 0) {
+                break;
+            }
+        }
+        if (transportBytes >= mOptions.sendHighWaterMark) {
+            return batch;
+        }
+        while (batch.size() < mOptions.sendBatchSize) {
+            if (mSendQueue.pollTo(Priority.INTERACTIVE, batch) < 0) {
+                break;
+            }
+        }
+        long bulkBytes = transportBytes;
+        while (batch.size() < mOptions.sendBatchSize && bulkBytes < mOptions.bulkChunkBytes) {
+            long bytes = mSendQueue.pollTo(Priority.BULK, batch);
+            if (bytes < 0) {
+                break;
+            }
+            bulkBytes += bytes;
+        }
+        return batch;
+    }
+
+    private void scheduleDrain(long delay) {
+        if (mDrainScheduled) {
+            return;
+        }
+        mDrainScheduled = true;
+        mHeartbeatExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mSendLock) {
+                    mDrainScheduled = false;
+                }
+                drain();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void updateWritable() {
+        boolean writable;
+        synchronized (mSendLock) {
+            writable = mSendQueue.size() < mOptions.sendQueueCapacity
+                    && (mTransport == null || mTransport.queueSize() < mOptions.sendHighWaterMark);
+        }
+        if (writable != mWrittable) {
+            mWrittable = writable;
+            mWritableSubject.onNext(writable);
+        }
+    }
+
+    protected void write(Packet... packets) throws UTF8Exception {
+        Transport transport = mTransport;
+        if (transport == null
+                || this.mReadyState != ReadyState.OPENING && this.mReadyState != ReadyState.OPEN) {
+            // Ensure we don't try to send anymore packets if the socket ends up being closed due to an exception
+            return;
+        }
+        transport.send(packets);
+    }
+
+    protected void doClose() {
+        discardProbe();
+        Transport transport = mTransport;
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    public void onOpen() {
+        this.mReadyState = ReadyState.OPEN;
+        drain();
+    }
+
+    private void checkReadyState() throws EngineIOException {
+        if (this.mReadyState == ReadyState.OPENING || this.mReadyState == ReadyState.OPEN
+                || this.mReadyState == ReadyState.PAUSED) {
+            return;
+        } else {
+            throw new EngineIOException("unknown packet for illegal state");
+        }
+    }
+
+    public void handlePacket(Packet packet, Subscriber<? super Packet> subscriber) {
+        if (packet.type != Packet.MESSAGE && packet.type != Packet.ERROR) {
+            // control packets, including the CLOSE announcing a dropped transport
+            return;
+        }
+        try {
+            checkReadyState();
+            if (packet.type == Packet.ERROR) {
+                EngineIOException err = new EngineIOException("server error");
+                subscriber.onError(err);
+                subscriber.onCompleted();
+            } else if (packet.type == Packet.MESSAGE) {
+                subscriber.onNext(packet);
+            }
+        } catch (EngineIOException e) {
+            subscriber.onError(e);
+            subscriber.onCompleted();
+        }
+    }
+
+
+    private void onPacketInternal(Packet packet) {
+        if (packet.type != Packet.OPEN && packet.type != Packet.PONG) {
+            // messages are the hot path and need nothing from the engine itself
+            return;
+        }
+        try {
+            checkReadyState();
+            if (packet.type == Packet.OPEN) {
+                try {
+                    this.onHandshake(new HandshakeData((String) packet.data));
+                } catch (JSONException e) {
+                }
+            } else if (packet.type == Packet.PONG) {
+                this.onPong();
+            }
+        } catch (EngineIOException e) {
+
+        }
+    }
+
+
+    void onHandshake(HandshakeData data) {
+        mBackoff.reset();
+        if (!mResumeRequested) {
+            // a new session, whose offsets are unrelated to those we have seen
+            resetOffsets();
+        }
+        this.mHandshaken = true;
+        this.mSessionId = data.sid;
+        this.mPingInterval = data.pingInterval;
+        this.mPingTimeout = data.pingTimeout;
+        Transport transport = mTransport;
+        if (transport != null) {
+            transport.setSessionId(data.sid);
+        }
+
+        setupIntervalPing();
+
+        if (mJournal != null) {
+            synchronized (mSendLock) {
+                scheduleReplay(0);
+            }
+        }
+
+        if (mOptions.upgrade && transport instanceof PollingTransport
+                && Arrays.asList(data.upgrades).contains(WebSocketTransport.NAME)
+                && Arrays.asList(mOptions.transports).contains(WebSocketTransport.NAME)) {
+            probe(data.sid);
+        }
+    }
+
+    /**
+     * Starts the engine.io upgrade: a websocket carrying the same sid sends "2probe"; once the
+     * server answers "3probe", polling is paused and drained, "5" (UPGRADE) is sent over the
+     * websocket and it becomes the transport.
+     */
+    private synchronized void probe(String sid) {
+        discardProbe();
+        final Transport probe = createTransport(WebSocketTransport.NAME, new Transport.Callback() {
+            @Override
+            public void onOpen(Transport transport) {
+                try {
+                    transport.send(new Packet<>(Packet.PING, PROBE));
+                } catch (UTF8Exception e) {
+                    onProbeFailed(transport);
+                }
+            }
+
+            @Override
+            public void onPacket(Transport transport, Packet packet) {
+                if (packet.type == Packet.PONG && PROBE.equals(packet.data)) {
+                    onProbeSucceeded(transport);
+                } else {
+                    onProbeFailed(transport);
+                }
+            }
+
+            @Override
+            public void onClose(Transport transport) {
+                onProbeFailed(transport);
+            }
+
+            @Override
+            public void onError(Transport transport, Throwable t, Response response) {
+                onProbeFailed(transport);
+            }
+        });
+        probe.setSessionId(sid);
+        mProbe = probe;
+        probe.open();
+    }
+
+    private synchronized void onProbeSucceeded(final Transport probe) {
+        if (probe != mProbe || mReadyState != ReadyState.OPEN) {
+            onProbeFailed(probe);
+            return;
+        }
+        // hold the send queue while polling finishes what it has in flight
+        mReadyState = ReadyState.PAUSED;
+        mTransport.pause(new Runnable() {
+            @Override
+            public void run() {
+                upgrade(probe);
+            }
+        });
+    }
+
+    private void upgrade(Transport probe) {
+        synchronized (this) {
+            if (probe != mProbe || mReadyState != ReadyState.PAUSED) {
+                return;
+            }
+            mProbe = null;
+            Transport polling = mTransport;
+            probe.setCallback(mTransportCallback);
+            mTransport = probe;
+            polling.discard();
+            if (mMetrics != null) {
+                mMetrics.onTransportOpen(probe.name());
+            }
+            try {
+                probe.send(new Packet(Packet.UPGRADE));
+            } catch (UTF8Exception e) {
+                onError("Encode Error", e);
+            }
+            mReadyState = ReadyState.OPEN;
+        }
+        drain();
+    }
+
+    private synchronized void onProbeFailed(Transport probe) {
+        if (probe != mProbe) {
+            return;
+        }
+        discardProbe();
+        if (mReadyState == ReadyState.PAUSED) {
+            // polling was paused for nothing; carry on with it
+            mReadyState = ReadyState.OPEN;
+            drain();
+        }
+    }
+
+    private synchronized void discardProbe() {
+        if (mProbe != null) {
+            mProbe.discard();
+            mProbe = null;
+        }
+    }
+
+    synchronized void setupIntervalPing() {
+        cancelHeartbeat();
+
+        mPingIntervalTimer = mHeartbeatExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ping();
+            }
+        }, this.mPingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void ping() {
+        mPingIntervalTimer = null;
+        if (mReadyState == ReadyState.PAUSED) {
+            // mid-upgrade; try again once the new transport has taken over
+            setupIntervalPing();
+            return;
+        }
+        if (mReadyState != ReadyState.OPEN) {
+            return;
+        }
+        mPingSentAt = System.nanoTime();
+        try {
+            // pings skip the send queue, a backlog there must not look like a dead server
+            write(new Packet(Packet.PING));
+        } catch (UTF8Exception e) {
+            onError("Encode Error", e);
+        }
+
+        mPingTimeoutTimer = mHeartbeatExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onPingTimeout();
+            }
+        }, this.mPingTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onPong() {
+        if (mPingTimeoutTimer == null) {
+            return;
+        }
+        mPingTimeoutTimer.cancel(false);
+        mPingTimeoutTimer = null;
+        mPingRtt = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mPingSentAt);
+        if (mMetrics != null) {
+            mMetrics.onPingRtt(mPingRtt);
+        }
+        setupIntervalPing();
+    }
+
+    private synchronized void onPingTimeout() {
+        mPingTimeoutTimer = null;
+        Transport transport = mTransport;
+        if (transport != null && transport.receivedAt() - (System.nanoTime()
+                - TimeUnit.MILLISECONDS.toNanos(mPingTimeout)) > 0) {
+            // packets keep arriving, the pong may be waiting behind them on the decode
+            // executor; a slow consumer must not look like a dead server
+            mPingTimeoutTimer = mHeartbeatExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onPingTimeout();
+                }
+            }, mPingTimeout, TimeUnit.MILLISECONDS);
+            return;
+        }
+        onError("Ping Timeout", new EngineIOException("ping timeout"));
+        if (transport != null) {
+            // the transport reports the cancellation through onError, which starts reconnecting
+            transport.cancel();
+        }
+    }
+
+    private synchronized void cancelHeartbeat() {
+        if (mPingIntervalTimer != null) {
+            mPingIntervalTimer.cancel(false);
+            mPingIntervalTimer = null;
+        }
+        if (mPingTimeoutTimer != null) {
+            mPingTimeoutTimer.cancel(false);
+            mPingTimeoutTimer = null;
+        }
+    }
+
+    /**
+     * Round trip time of the last answered ping in milliseconds, or -1 before the first pong.
+     */
+    public long getPingRtt() {
+        return mPingRtt;
+    }
+
+
+    void onClose() {
+        this.mReadyState = ReadyState.CLOSED;
+        this.mHandshaken = false;
+        cancelHeartbeat();
+        // let packet listeners know the session is gone; onPacket() subscribers only see MESSAGE
+        Packet close = new Packet(Packet.CLOSE);
+        for (PacketListener l : mPacketListeners) {
+            l.onPacket(close);
+        }
+        scheduleReconnect();
+    }
+
+    void onError(String message, Throwable t) {
+        if (mMetrics != null) {
+            mMetrics.onError(message, t);
+        } else {
+            t.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the shared stream of MESSAGE packets. All subscribers share one listener and one
+     * decode per frame; the connection opens with the first subscriber. Each subscriber that
+     * {@code observeOn} another scheduler is buffered on its own according to
+     * {@link Options#packetBackpressure} instead of holding up the reader thread or the other
+     * subscribers.
+     */
+    public Observable<Packet> onPacket() {
+        Observable<Packet> packets = mSharedPackets;
+        if (packets == null) {
+            synchronized (this) {
+                packets = mSharedPackets;
+                if (packets == null) {
+                    packets = mSharedPackets = createPacketStream();
+                }
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Returns the MESSAGE payloads decoded with {@code serializer}. Decoding runs on
+     * {@link Options#deserializeScheduler} rather than the okhttp reader thread; a payload that
+     * fails to decode ends the stream with an {@link EngineIOException}.
+     */
+    public <T> Observable<T> onMessage(final Serializer<T> serializer) {
+        return onPacket()
+                .filter(new Func1<Packet, Boolean>() {
+                    @Override
+                    public Boolean call(Packet packet) {
+                        return packet.type == Packet.MESSAGE;
+                    }
+                })
+                .observeOn(mOptions.deserializeScheduler)
+                .map(new Func1<Packet, T>() {
+                    @Override
+                    public T call(Packet packet) {
+                        return serializer.decode(packet.data);
+                    }
+                });
+    }
+
+    private Observable<Packet> createPacketStream() {
+        Observable<Packet> packets = Observable.create(new Observable.OnSubscribe<Packet>() {
+            @Override
+            public void call(final Subscriber<? super Packet> subscriber) {
+                final PacketListener listener = new PacketListener() {
+                    @Override
+                    public void onPacket(Packet packet) {
+                        handlePacket(packet, subscriber);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        subscriber.onError(t);
+                    }
+                };
+
+                mPacketListeners.add(listener);
+
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        mPacketListeners.remove(listener);
+                    }
+                }));
+
+                // register first so frames arriving right after the handshake are not missed
+                openIfNeed();
+
+            }
+        });
+
+        Observable<Packet> shared = mOptions.packetReplaySize > 0
+                ? packets.replay(mOptions.packetReplaySize).refCount()
+                : packets.publish().refCount();
+
+        // every subscriber gets its own buffer, so a slow one only loses its own packets and
+        // never holds up the shared stream, which always has demand
+        shared = shared.lift(new OperatorBackpressure(mOptions.packetBackpressure,
+                mOptions.conflationKeyExtractor, mOptions.packetBufferSize));
+
+        if (mOptions.deliveryScheduler != null) {
+            // the buffer above absorbs bursts the scheduler falls behind on
+            shared = shared.observeOn(mOptions.deliveryScheduler);
+        }
+        return shared;
+    }
+
+    private final Transport.Callback mTransportCallback = new Transport.Callback() {
+        @Override
+        public void onOpen(Transport transport) {
+            if (transport == mTransport) {
+                if (mMetrics != null) {
+                    mMetrics.onTransportOpen(transport.name());
+                }
+                WebSocket.this.onOpen();
+            }
+        }
+
+        @Override
+        public void onPacket(Transport transport, Packet packet) {
+            if (transport == mTransport) {
+                dispatchPacket(packet);
+            }
+        }
+
+        @Override
+        public void onClose(Transport transport) {
+            if (transport == mTransport) {
+                if (mMetrics != null) {
+                    mMetrics.onTransportClose(transport.name(), null);
+                }
+                WebSocket.this.onClose();
+            }
+        }
+
+        @Override
+        public void onError(Transport transport, Throwable t, Response response) {
+            WebSocket.this.onError("Transport Error", t);
+
+            if (transport != mTransport) {
+                return;
+            }
+            if (mMetrics != null) {
+                mMetrics.onTransportClose(transport.name(), t);
+            }
+            if (response != null && response.code() == 400 && transport.mSessionId != null) {
+                // the server no longer knows our sid; handshake afresh without waiting, keeping
+                // the sid around for session resume
+                mLastPacketAt = 0;
+                if (mOffsetExtractor == null) {
+                    mSessionId = null;
+                }
+                doOpen();
+                return;
+            }
+            WebSocket.this.onClose();
+        }
+    };
+
+    // forwards the raw okhttp callbacks of websocket transports to addSocketListener() listeners
+    private final WebSocketListener mSocketListenerTap = new WebSocketListener() {
+        @Override
+        public void onOpen(okhttp3.WebSocket webSocket, Response response) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onOpen(webSocket, response);
+            }
+        }
+
+        @Override
+        public void onMessage(okhttp3.WebSocket webSocket, String text) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onMessage(webSocket, text);
+            }
+        }
+
+        @Override
+        public void onMessage(okhttp3.WebSocket webSocket, ByteString bytes) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onMessage(webSocket, bytes);
+            }
+        }
+
+        @Override
+        public void onClosing(okhttp3.WebSocket webSocket, int code, String reason) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onClosing(webSocket, code, reason);
+            }
+        }
+
+        @Override
+        public void onClosed(okhttp3.WebSocket webSocket, int code, String reason) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onClosed(webSocket, code, reason);
+            }
+        }
+
+        @Override
+        public void onFailure(okhttp3.WebSocket webSocket, Throwable t, Response response) {
+            for (WebSocketListener l : mSocketListeners) {
+                l.onFailure(webSocket, t, response);
+            }
+        }
+    };
+}
@@ -0,0 +1,212 @@
+package xyz.geminiwen.gsocket;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocketListener;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * The websocket transport: one engine.io packet per websocket frame.
+ */
+public class WebSocketTransport extends Transport {
+
+    public static final String NAME = "websocket";
+
+    private final WebSocketListener mTap;
+    private volatile okhttp3.WebSocket mWebSocket;
+
+    /**
+     * @param tap receives the raw okhttp callbacks as well, may be null
+     */
+    public WebSocketTransport(OkHttpClient client, HttpUrl baseUrl, Callback callback, WebSocketListener tap) {
+        super(client, baseUrl, callback);
+        mTap = tap;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void open() {
+        Request.Builder builder = new Request.Builder().url(url());
+        final Request request = builder.build();
+
+        mWebSocket = mClient.newWebSocket(request, mWebSocketListener);
+    }
+
+    @Override
+    public void send(Packet... packets) throws UTF8Exception {
+        okhttp3.WebSocket webSocket = mWebSocket;
+        if (webSocket == null) {
+            return;
+        }
+        MetricsListener metrics = mMetrics;
+        for (Packet packet : packets) {
+            long start = metrics != null ? System.nanoTime() : 0;
+            if (packet.data == null || packet.data instanceof String) {
+                String data = Parser.encodePacketString((Packet<String>) packet);
+                if (metrics != null) {
+                    metrics.onPacketSent(NAME, packet, UTF8.encodedLength(data), System.nanoTime() - start);
+                }
+                webSocket.send(data);
+            } else {
+                Buffer frame = new Buffer();
+                Parser.encodePacketBinary(packet, frame);
+                if (metrics != null) {
+                    metrics.onPacketSent(NAME, packet, frame.size(), System.nanoTime() - start);
+                }
+                webSocket.send(frame.snapshot());
+            }
+        }
+    }
+
+    @Override
+    public long queueSize() {
+        okhttp3.WebSocket webSocket = mWebSocket;
+        return webSocket == null ? 0 : webSocket.queueSize();
+    }
+
+    @Override
+    public void close() {
+        okhttp3.WebSocket webSocket = mWebSocket;
+        if (webSocket != null) {
+            try {
+                webSocket.close(1000, "");
+            } catch (IllegalStateException e) {
+                // websocket already closed
+                webSocket.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        okhttp3.WebSocket webSocket = mWebSocket;
+        if (webSocket != null) {
+            // okhttp reports the cancelled socket through onFailure
+            webSocket.cancel();
+        }
+    }
+
+    private void onText(okhttp3.WebSocket webSocket, String text) {
+        MetricsListener metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Packet<String> packet = Parser.decodePacket(text);
+        if (metrics != null) {
+            metrics.onPacketReceived(NAME, packet, UTF8.encodedLength(text), System.nanoTime() - start);
+        }
+        mCallback.onPacket(this, packet);
+        if (mTap != null) {
+            mTap.onMessage(webSocket, text);
+        }
+    }
+
+    private void onBinary(okhttp3.WebSocket webSocket, ByteString bytes) {
+        MetricsListener metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Packet<ByteString> packet = Parser.decodePacket(bytes);
+        if (metrics != null) {
+            metrics.onPacketReceived(NAME, packet, bytes.size(), System.nanoTime() - start);
+        }
+        mCallback.onPacket(this, packet);
+        if (mTap != null) {
+            mTap.onMessage(webSocket, bytes);
+        }
+    }
+
+    /**
+     * Hands okhttp's callbacks to {@link #post}, so with an event executor, frames are decoded
+     * and dispatched off the reader thread, and the close or failure that ends the socket still
+     * comes after them. Frames wait for room in the executor's queue, stalling the reader;
+     * they skip the Runnable when there is no executor.
+     */
+    private final WebSocketListener mWebSocketListener = new WebSocketListener() {
+        @Override
+        public void onOpen(final okhttp3.WebSocket webSocket, final Response response) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTap != null) {
+                        mTap.onOpen(webSocket, response);
+                    }
+                    mCallback.onOpen(WebSocketTransport.this);
+                }
+            });
+        }
+
+        @Override
+        public void onMessage(final okhttp3.WebSocket webSocket, final String text) {
+            onReceived();
+            if (!hasEventExecutor()) {
+                onText(webSocket, text);
+                return;
+            }
+            postPacket(new Runnable() {
+                @Override
+                public void run() {
+                    onText(webSocket, text);
+                }
+            });
+        }
+
+        @Override
+        public void onMessage(final okhttp3.WebSocket webSocket, final ByteString bytes) {
+            onReceived();
+            if (!hasEventExecutor()) {
+                onBinary(webSocket, bytes);
+                return;
+            }
+            postPacket(new Runnable() {
+                @Override
+                public void run() {
+                    onBinary(webSocket, bytes);
+                }
+            });
+        }
+
+        @Override
+        public void onClosing(final okhttp3.WebSocket webSocket, final int code, final String reason) {
+            // answer the server's close frame so okhttp can finish the close handshake
+            webSocket.close(1000, null);
+            if (mTap != null) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mTap.onClosing(webSocket, code, reason);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onClosed(final okhttp3.WebSocket webSocket, final int code, final String reason) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTap != null) {
+                        mTap.onClosed(webSocket, code, reason);
+                    }
+                    mCallback.onClose(WebSocketTransport.this);
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(final okhttp3.WebSocket webSocket, final Throwable t, final Response response) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTap != null) {
+                        mTap.onFailure(webSocket, t, response);
+                    }
+                    mCallback.onError(WebSocketTransport.this, t, response);
+                }
+            });
+        }
+    };
+}
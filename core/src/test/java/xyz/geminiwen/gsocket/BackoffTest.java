@@ -0,0 +1,83 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+
+    @Test
+    public void doublesUpToTheMaximum() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, 0);
+        assertEquals(100, backoff.duration());
+        assertEquals(200, backoff.duration());
+        assertEquals(400, backoff.duration());
+        assertEquals(800, backoff.duration());
+        assertEquals(1000, backoff.duration());
+        assertEquals(1000, backoff.duration());
+        assertEquals(6, backoff.attempts());
+    }
+
+    @Test
+    public void staysAtTheMaximumForever() throws Exception {
+        Backoff backoff = new Backoff(100, 5000, 0.5);
+        for (int i = 0; i < 5000; i++) {
+            long delay = backoff.duration();
+            // an uncapped 2^i turns into Infinity, then NaN with jitter, then a 0 delay
+            assertTrue(i + ": " + delay, delay >= 50);
+        }
+        assertEquals(5000, backoff.attempts());
+    }
+
+    @Test
+    public void jittersAroundTheNominalDelay() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, 0.5);
+        long nominal = 100;
+        for (int i = 0; i < 2000; i++) {
+            long delay = backoff.duration();
+            assertTrue(i + ": " + delay, delay >= nominal / 2 && delay <= nominal * 3 / 2);
+            nominal = Math.min(nominal * 2, 1000);
+        }
+    }
+
+    @Test
+    public void jittersAtTheMaximumToo() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, 0.5);
+        int below = 0;
+        int above = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = backoff.duration();
+            if (i < 4) {
+                continue;
+            }
+            if (delay < 1000) {
+                below++;
+            } else if (delay > 1000) {
+                above++;
+            }
+        }
+        // not piled up at the maximum
+        assertTrue(below > 100);
+        assertTrue(above > 100);
+    }
+
+    @Test
+    public void resetStartsOver() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, 0);
+        for (int i = 0; i < 10; i++) {
+            backoff.duration();
+        }
+        backoff.reset();
+        assertEquals(0, backoff.attempts());
+        assertEquals(100, backoff.duration());
+        assertEquals(200, backoff.duration());
+    }
+
+    @Test
+    public void zeroMinimumStaysZero() throws Exception {
+        Backoff backoff = new Backoff(0, 1000, 0.5);
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(0, backoff.duration());
+        }
+    }
+}
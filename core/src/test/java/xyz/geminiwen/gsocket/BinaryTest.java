@@ -0,0 +1,290 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.ByteString;
+import rx.functions.Action1;
+
+import static org.junit.Assert.*;
+
+public class BinaryTest {
+
+    private static final ByteString A = ByteString.encodeUtf8("a");
+    private static final ByteString B = ByteString.encodeUtf8("bb");
+    private static final ByteString C = ByteString.encodeUtf8("ccc");
+
+    @Test
+    public void hasBinaryFindsNestedValues() throws Exception {
+        assertFalse(Binary.hasBinary(new JSONArray("[\"ev\",{\"a\":[1,2]},\"x\"]")));
+        assertTrue(Binary.hasBinary(A));
+        assertTrue(Binary.hasBinary(new byte[0]));
+
+        JSONArray nested = new JSONArray().put("ev").put(new JSONObject().put("k", new JSONArray().put(1).put(A)));
+        assertTrue(Binary.hasBinary(nested));
+    }
+
+    @Test
+    public void deconstructNumbersNestedPlaceholdersInOrder() throws Exception {
+        byte[] raw = {1, 2};
+        JSONArray data = new JSONArray()
+                .put("ev")
+                .put(new JSONArray().put(A).put(new JSONObject().put("k", raw)))
+                .put(C);
+        SocketPacket packet = new SocketPacket(SocketPacket.EVENT);
+        packet.data = data;
+
+        List<Object> attachments = new ArrayList<>();
+        Binary.deconstruct(packet, attachments);
+
+        assertEquals(SocketPacket.BINARY_EVENT, packet.type);
+        assertEquals(3, packet.attachments);
+        assertEquals(3, attachments.size());
+        assertSame(A, attachments.get(0));
+        assertSame(raw, attachments.get(1));
+        assertSame(C, attachments.get(2));
+
+        JSONArray out = (JSONArray) packet.data;
+        assertEquals("ev", out.getString(0));
+        assertPlaceholder(0, out.getJSONArray(1).getJSONObject(0));
+        assertPlaceholder(1, out.getJSONArray(1).getJSONObject(1).getJSONObject("k"));
+        assertPlaceholder(2, out.getJSONObject(2));
+    }
+
+    @Test
+    public void deconstructTurnsAckIntoBinaryAck() throws Exception {
+        SocketPacket packet = new SocketPacket(SocketPacket.ACK);
+        packet.id = 7;
+        packet.data = new JSONArray().put(A);
+
+        List<Object> attachments = new ArrayList<>();
+        Binary.deconstruct(packet, attachments);
+
+        assertEquals(SocketPacket.BINARY_ACK, packet.type);
+        assertEquals("61-7[{\"_placeholder\":true,\"num\":0}]", SocketParser.encode(packet));
+    }
+
+    @Test
+    public void deconstructLeavesTheCallersDataUntouched() throws Exception {
+        JSONObject plain = new JSONObject().put("n", 1);
+        JSONObject meta = new JSONObject().put("blob", A).put("name", "a.bin");
+        JSONArray data = new JSONArray().put("ev").put(plain).put(meta).put(new JSONArray().put(B));
+        String before = data.toString();
+        SocketPacket packet = new SocketPacket(SocketPacket.EVENT);
+        packet.data = data;
+
+        Binary.deconstruct(packet, new ArrayList<Object>());
+
+        assertEquals(before, data.toString());
+        assertSame(A, meta.get("blob"));
+        assertSame(B, data.getJSONArray(3).get(0));
+        JSONArray out = (JSONArray) packet.data;
+        assertNotSame(data, out);
+        // parts without binary values are shared, not copied
+        assertSame(plain, out.get(1));
+        assertEquals("a.bin", out.getJSONObject(2).getString("name"));
+    }
+
+    @Test
+    public void deconstructKeepsDataWithoutBinaryAsIs() throws Exception {
+        JSONArray data = new JSONArray().put("ev").put(new JSONObject().put("n", 1));
+        SocketPacket packet = new SocketPacket(SocketPacket.EVENT);
+        packet.data = data;
+
+        Binary.deconstruct(packet, new ArrayList<Object>());
+
+        assertSame(data, packet.data);
+    }
+
+    @Test
+    public void reconstructPutsFrameSlicesBackInPlace() throws Exception {
+        SocketPacket packet = SocketParser.decode(
+                "52-[\"ev\",{\"x\":[{\"_placeholder\":true,\"num\":1}]},{\"_placeholder\":true,\"num\":0}]");
+        assertEquals(SocketPacket.BINARY_EVENT, packet.type);
+        assertEquals(2, packet.attachments);
+
+        Binary.reconstruct(packet, new ByteString[] {A, B});
+
+        assertEquals(SocketPacket.EVENT, packet.type);
+        assertEquals(0, packet.attachments);
+        JSONArray data = (JSONArray) packet.data;
+        assertSame(B, data.getJSONObject(1).getJSONArray("x").get(0));
+        assertSame(A, data.get(2));
+    }
+
+    @Test
+    public void reconstructTurnsOutOfRangePlaceholdersIntoNull() throws Exception {
+        SocketPacket packet = SocketParser.decode("51-[\"ev\","
+                + "{\"_placeholder\":true,\"num\":1},"
+                + "{\"_placeholder\":true,\"num\":-1},"
+                + "{\"_placeholder\":true},"
+                + "{\"_placeholder\":true,\"num\":0}]");
+
+        Binary.reconstruct(packet, new ByteString[] {A});
+
+        JSONArray data = (JSONArray) packet.data;
+        assertSame(JSONObject.NULL, data.get(1));
+        assertSame(JSONObject.NULL, data.get(2));
+        assertSame(JSONObject.NULL, data.get(3));
+        assertSame(A, data.get(4));
+    }
+
+    @Test
+    public void roundTripsThroughTheParser() throws Exception {
+        SocketPacket packet = new SocketPacket(SocketPacket.EVENT);
+        packet.nsp = "/chat";
+        packet.id = 3;
+        packet.data = new JSONArray().put("file").put(new JSONObject().put("parts", new JSONArray().put(A).put(B)));
+
+        List<Object> attachments = new ArrayList<>();
+        Binary.deconstruct(packet, attachments);
+        SocketPacket decoded = SocketParser.decode(SocketParser.encode(packet));
+        assertEquals(SocketPacket.BINARY_EVENT, decoded.type);
+        assertEquals("/chat", decoded.nsp);
+        assertEquals(3, decoded.id);
+        assertEquals(2, decoded.attachments);
+
+        ByteString[] frames = new ByteString[attachments.size()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = (ByteString) attachments.get(i);
+        }
+        Binary.reconstruct(decoded, frames);
+
+        JSONArray parts = ((JSONArray) decoded.data).getJSONObject(1).getJSONArray("parts");
+        assertEquals(A, parts.get(0));
+        assertEquals(B, parts.get(1));
+    }
+
+    @Test
+    public void managerSendsAttachmentsRightAfterTheHeader() throws Exception {
+        FakeEngine engine = new FakeEngine();
+        Socket socket = connect(engine, new Options());
+
+        socket.emit("up", A, "text");
+
+        assertEquals(1, engine.mSent.size());
+        Packet[] packets = engine.mSent.get(0);
+        assertEquals(2, packets.length);
+        assertEquals("51-[\"up\",{\"_placeholder\":true,\"num\":0},\"text\"]", packets[0].data);
+        assertSame(A, packets[1].data);
+    }
+
+    @Test
+    public void managerReassemblesBinaryEvents() throws Exception {
+        FakeEngine engine = new FakeEngine();
+        Socket socket = connect(engine, new Options());
+        final List<Event> events = new ArrayList<>();
+        socket.on("file").subscribe(new Action1<Event>() {
+            @Override
+            public void call(Event event) {
+                events.add(event);
+            }
+        });
+
+        engine.receive("52-[\"file\",{\"_placeholder\":true,\"num\":0},{\"_placeholder\":true,\"num\":1}]");
+        engine.receive(A);
+        assertTrue(events.isEmpty());
+        engine.receive(B);
+
+        assertEquals(1, events.size());
+        assertSame(A, events.get(0).args.get(0));
+        assertSame(B, events.get(0).args.get(1));
+    }
+
+    @Test
+    public void managerRejectsMoreThanMaxAttachments() throws Exception {
+        Options opts = new Options();
+        opts.maxAttachments = 1;
+        FakeEngine engine = new FakeEngine();
+        Socket socket = connect(engine, opts);
+        final List<Event> events = new ArrayList<>();
+        socket.on("file").subscribe(new Action1<Event>() {
+            @Override
+            public void call(Event event) {
+                events.add(event);
+            }
+        });
+
+        engine.receive("52-[\"file\",{\"_placeholder\":true,\"num\":0},{\"_placeholder\":true,\"num\":1}]");
+        engine.receive(A);
+        engine.receive(B);
+
+        assertEquals("Too Many Attachments", engine.mError);
+        assertTrue(events.isEmpty());
+
+        // a packet within the limit still goes through
+        engine.receive("51-[\"file\",{\"_placeholder\":true,\"num\":0}]");
+        engine.receive(C);
+        assertEquals(1, events.size());
+        assertSame(C, events.get(0).args.get(0));
+    }
+
+    private static void assertPlaceholder(int num, JSONObject placeholder) throws Exception {
+        assertTrue(placeholder.getBoolean("_placeholder"));
+        assertEquals(num, placeholder.getInt("num"));
+    }
+
+    private static Socket connect(FakeEngine engine, Options opts) {
+        Manager manager = new Manager(engine, opts);
+        Socket socket = manager.socket("/").connect();
+        engine.receive("0");
+        assertTrue(socket.isConnected());
+        return socket;
+    }
+
+    private static Options engineOptions() {
+        Options opts = new Options();
+        opts.host = "localhost";
+        opts.port = 80;
+        opts.scheme = "http";
+        opts.path = "engine.io/";
+        return opts;
+    }
+
+    /**
+     * Hands packets straight to the manager and records what it sends, without a connection.
+     */
+    private static class FakeEngine extends WebSocket {
+        final List<Packet[]> mSent = new ArrayList<>();
+        final List<PacketListener> mListeners = new ArrayList<>();
+        String mError;
+
+        FakeEngine() {
+            super(engineOptions());
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return false;
+        }
+
+        @Override
+        public void addPacketListener(PacketListener l) {
+            mListeners.add(l);
+        }
+
+        @Override
+        public void send(Packet... packets) {
+            mSent.add(packets);
+        }
+
+        @Override
+        void onError(String message, Throwable t) {
+            mError = message;
+        }
+
+        void receive(Object data) {
+            for (PacketListener l : mListeners) {
+                l.onPacket(new Packet<>(Packet.MESSAGE, data));
+            }
+        }
+    }
+}
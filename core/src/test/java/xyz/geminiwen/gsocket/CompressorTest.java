@@ -0,0 +1,181 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.GzipSink;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+
+public class CompressorTest {
+
+    private static final String URL = "http://localhost/engine.io/";
+
+    @Test
+    public void sendsSmallPayloadsAsIs() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        Compressor compressor = new Compressor(1024, stats);
+        ByteString payload = repeated(1023);
+        Request.Builder request = new Request.Builder().url(URL);
+
+        assertSame(payload, compressor.compress(payload, request));
+        assertNull(request.build().header("Content-Encoding"));
+        assertEquals(1023, stats.getPayloadBytesSent());
+        assertEquals(1023, stats.getWireBytesSent());
+    }
+
+    @Test
+    public void deflatesPayloadsAtTheThreshold() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        Compressor compressor = new Compressor(1024, stats);
+        ByteString payload = repeated(1024);
+        Request.Builder request = new Request.Builder().url(URL);
+
+        ByteString body = compressor.compress(payload, request);
+
+        assertEquals("deflate", request.build().header("Content-Encoding"));
+        assertTrue(body.size() < payload.size());
+        assertEquals(payload, inflate(body));
+        assertEquals(1024, stats.getPayloadBytesSent());
+        assertEquals(body.size(), stats.getWireBytesSent());
+    }
+
+    @Test
+    public void reusesTheDeflaterForEveryBody() throws Exception {
+        Compressor compressor = new Compressor(16, new CompressionStats());
+        ByteString first = repeated(4096);
+        ByteString second = ByteString.encodeUtf8("4[\"second\",\"second\",\"second\",\"second\"]");
+
+        assertEquals(first, inflate(compressor.compress(first, new Request.Builder().url(URL))));
+        assertEquals(second, inflate(compressor.compress(second, new Request.Builder().url(URL))));
+        compressor.release();
+        // a released compressor starts over with a new Deflater
+        assertEquals(first, inflate(compressor.compress(first, new Request.Builder().url(URL))));
+    }
+
+    @Test
+    public void sendsIncompressiblePayloadsAsIs() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        Compressor compressor = new Compressor(16, stats);
+        byte[] random = new byte[2048];
+        new Random(1).nextBytes(random);
+        ByteString payload = ByteString.of(random);
+        Request.Builder request = new Request.Builder().url(URL);
+
+        assertSame(payload, compressor.compress(payload, request));
+        assertNull(request.build().header("Content-Encoding"));
+        assertEquals(2048, stats.getWireBytesSent());
+    }
+
+    @Test
+    public void asksForCompressedResponses() throws Exception {
+        Request.Builder request = new Request.Builder().url(URL);
+        new Compressor(1024, new CompressionStats()).acceptCompressed(request);
+        assertEquals("gzip, deflate", request.build().header("Accept-Encoding"));
+    }
+
+    @Test
+    public void inflatesGzipResponses() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        ByteString payload = repeated(5000);
+        Buffer gzipped = new Buffer();
+        BufferedSink sink = Okio.buffer(new GzipSink(gzipped));
+        sink.write(payload);
+        sink.close();
+        long wire = gzipped.size();
+
+        BufferedSource decoded = new Compressor(1024, stats).decompress(response("gzip", gzipped));
+
+        assertEquals(payload, decoded.readByteString());
+        decoded.close();
+        assertEquals(5000, stats.getPayloadBytesReceived());
+        assertEquals(wire, stats.getWireBytesReceived());
+    }
+
+    @Test
+    public void inflatesDeflateResponses() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        ByteString payload = repeated(5000);
+        ByteString deflated = deflate(payload);
+
+        BufferedSource decoded = new Compressor(1024, stats)
+                .decompress(response("deflate", new Buffer().write(deflated)));
+
+        assertEquals(payload, decoded.readByteString());
+        decoded.close();
+        assertEquals(5000, stats.getPayloadBytesReceived());
+        assertEquals(deflated.size(), stats.getWireBytesReceived());
+    }
+
+    @Test
+    public void countsPlainResponsesOnBothSides() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        ByteString payload = repeated(300);
+
+        BufferedSource decoded = new Compressor(1024, stats)
+                .decompress(response(null, new Buffer().write(payload)));
+
+        assertEquals(payload, decoded.readByteString());
+        decoded.close();
+        assertEquals(300, stats.getPayloadBytesReceived());
+        assertEquals(300, stats.getWireBytesReceived());
+    }
+
+    private static ByteString repeated(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ('a' + i % 7);
+        }
+        return ByteString.of(bytes);
+    }
+
+    private static ByteString deflate(ByteString payload) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(payload.toByteArray());
+        deflater.finish();
+        Buffer out = new Buffer();
+        byte[] chunk = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.readByteString();
+    }
+
+    private static ByteString inflate(ByteString body) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(body.toByteArray());
+        Buffer out = new Buffer();
+        byte[] chunk = new byte[1024];
+        while (!inflater.finished()) {
+            out.write(chunk, 0, inflater.inflate(chunk));
+        }
+        inflater.end();
+        return out.readByteString();
+    }
+
+    private static Response response(String encoding, Buffer body) {
+        Response.Builder response = new Response.Builder()
+                .request(new Request.Builder().url(URL).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .body(ResponseBody.create(MediaType.parse("text/plain"), body.size(), body));
+        if (encoding != null) {
+            response.header("Content-Encoding", encoding);
+        }
+        return response.build();
+    }
+}
@@ -0,0 +1,188 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class EventRouterTest {
+
+    private final EventRouter mRouter = new EventRouter();
+
+    private static Event event(String name) {
+        return new Event(null, name, null, -1);
+    }
+
+    private static List<String> names(TestSubscriber<Event> subscriber) {
+        List<String> names = new ArrayList<>();
+        for (Event event : subscriber.getOnNextEvents()) {
+            names.add(event.name);
+        }
+        return names;
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Test
+    public void routesExactNames() throws Exception {
+        TestSubscriber<Event> chat = new TestSubscriber<>();
+        TestSubscriber<Event> other = new TestSubscriber<>();
+        mRouter.add("chat", chat);
+        mRouter.add("other", other);
+
+        mRouter.route(event("chat"));
+        mRouter.route(event("chatter"));
+        mRouter.route(event("cha"));
+
+        assertEquals(list("chat"), names(chat));
+        other.assertNoValues();
+    }
+
+    @Test
+    public void routesPrefixes() throws Exception {
+        TestSubscriber<Event> user = new TestSubscriber<>();
+        mRouter.add("user:*", user);
+
+        mRouter.route(event("user:join"));
+        mRouter.route(event("user:"));
+        mRouter.route(event("user"));
+        mRouter.route(event("users:join"));
+
+        assertEquals(list("user:join", "user:"), names(user));
+    }
+
+    @Test
+    public void bareStarMatchesEverything() throws Exception {
+        TestSubscriber<Event> all = new TestSubscriber<>();
+        mRouter.add("*", all);
+
+        mRouter.route(event("a"));
+        mRouter.route(event(""));
+
+        assertEquals(list("a", ""), names(all));
+        assertTrue(mRouter.hasRoute("anything"));
+    }
+
+    @Test
+    public void deliversOnceToEachMatchingPattern() throws Exception {
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        mRouter.add("room:1", subscriber);
+        mRouter.add("room:*", subscriber);
+        mRouter.add("ro*", subscriber);
+        mRouter.add("room:2", subscriber);
+
+        mRouter.route(event("room:1"));
+
+        assertEquals(list("room:1", "room:1", "room:1"), names(subscriber));
+    }
+
+    @Test
+    public void hasRoute() throws Exception {
+        assertFalse(mRouter.hasRoute("chat"));
+        mRouter.add("chat", new TestSubscriber<Event>());
+        mRouter.add("user:*", new TestSubscriber<Event>());
+
+        assertTrue(mRouter.hasRoute("chat"));
+        assertFalse(mRouter.hasRoute("chatter"));
+        assertTrue(mRouter.hasRoute("user:join"));
+        assertTrue(mRouter.hasRoute("user:"));
+        assertFalse(mRouter.hasRoute("user"));
+        assertFalse(mRouter.hasRoute("admin:join"));
+    }
+
+    @Test
+    public void removesSubscribers() throws Exception {
+        TestSubscriber<Event> first = new TestSubscriber<>();
+        TestSubscriber<Event> second = new TestSubscriber<>();
+        mRouter.add("chat", first);
+        mRouter.add("chat", second);
+        mRouter.add("user:*", first);
+
+        mRouter.remove("chat", first);
+        mRouter.remove("user:*", first);
+        mRouter.route(event("chat"));
+        mRouter.route(event("user:join"));
+
+        first.assertNoValues();
+        assertEquals(list("chat"), names(second));
+        assertFalse(mRouter.hasRoute("user:join"));
+
+        mRouter.remove("chat", second);
+        assertFalse(mRouter.hasRoute("chat"));
+    }
+
+    @Test
+    public void removingAPrefixKeepsLongerOnes() throws Exception {
+        TestSubscriber<Event> shorter = new TestSubscriber<>();
+        TestSubscriber<Event> longer = new TestSubscriber<>();
+        mRouter.add("a*", shorter);
+        mRouter.add("abc*", longer);
+
+        mRouter.remove("a*", shorter);
+        mRouter.route(event("abcd"));
+        mRouter.route(event("ab"));
+
+        shorter.assertNoValues();
+        assertEquals(list("abcd"), names(longer));
+
+        mRouter.remove("abc*", longer);
+        assertFalse(mRouter.hasRoute("abcd"));
+    }
+
+    @Test
+    public void ignoresUnknownRemovals() throws Exception {
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        mRouter.add("chat", subscriber);
+
+        mRouter.remove("chat", new TestSubscriber<Event>());
+        mRouter.remove("other", subscriber);
+        mRouter.remove("x*", subscriber);
+        mRouter.route(event("chat"));
+
+        assertEquals(list("chat"), names(subscriber));
+    }
+
+    @Test
+    public void skipsUnsubscribedSubscribers() throws Exception {
+        TestSubscriber<Event> subscriber = new TestSubscriber<>();
+        mRouter.add("chat", subscriber);
+        subscriber.unsubscribe();
+
+        mRouter.route(event("chat"));
+
+        subscriber.assertNoValues();
+    }
+
+    @Test
+    public void subscriberMayUnsubscribeWhileRouting() throws Exception {
+        final TestSubscriber<Event> second = new TestSubscriber<>();
+        TestSubscriber<Event> first = new TestSubscriber<Event>() {
+            @Override
+            public void onNext(Event event) {
+                super.onNext(event);
+                mRouter.remove("chat", this);
+                mRouter.remove("chat", second);
+            }
+        };
+        mRouter.add("chat", first);
+        mRouter.add("chat", second);
+
+        mRouter.route(event("chat"));
+        mRouter.route(event("chat"));
+
+        assertEquals(1, first.getOnNextEvents().size());
+        // still in the snapshot being routed, and not unsubscribed
+        assertEquals(list("chat"), names(second));
+        assertFalse(mRouter.hasRoute("chat"));
+    }
+}
@@ -0,0 +1,84 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class IOTest {
+
+    private static Options options(String host) {
+        Options opts = new Options();
+        opts.host = host;
+        opts.port = 80;
+        opts.scheme = "http";
+        opts.path = "engine.io/";
+        return opts;
+    }
+
+    @Test
+    public void sharesOneManagerPerEndpoint() throws Exception {
+        Options opts = options("shared.example");
+        try {
+            Manager manager = IO.manager(opts);
+            assertSame(manager, IO.manager(options("shared.example")));
+            assertNotSame(manager, IO.manager(options("other.example")));
+        } finally {
+            IO.release(opts);
+            IO.release(options("other.example"));
+        }
+    }
+
+    @Test
+    public void racingCallersBuildOneManager() throws Exception {
+        final Options opts = options("race.example");
+        final Set<Manager> managers = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<Manager, Boolean>()));
+        try {
+            for (int round = 0; round < 20; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                Thread[] threads = new Thread[8];
+                for (int i = 0; i < threads.length; i++) {
+                    threads[i] = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                start.await();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            managers.add(IO.manager(opts));
+                        }
+                    });
+                    threads[i].start();
+                }
+                start.countDown();
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                assertEquals(1, managers.size());
+                IO.release(opts);
+                managers.clear();
+            }
+        } finally {
+            IO.release(opts);
+        }
+    }
+
+    @Test
+    public void releaseDropsTheManager() throws Exception {
+        Options opts = options("release.example");
+        Manager manager = IO.manager(opts);
+        IO.release(opts);
+        Manager next = IO.manager(opts);
+        try {
+            assertNotSame(manager, next);
+        } finally {
+            IO.release(opts);
+        }
+    }
+}
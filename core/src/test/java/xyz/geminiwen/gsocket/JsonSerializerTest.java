@@ -0,0 +1,94 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class JsonSerializerTest {
+
+    private final JsonSerializer mSerializer = JsonSerializer.INSTANCE;
+
+    @Test
+    public void roundTripsValues() throws Exception {
+        JSONObject value = new JSONObject()
+                .put("name", "caf\u00e9 \"quoted\"")
+                .put("list", new JSONArray().put(1).put(2.5).put(true).put(JSONObject.NULL))
+                .put("nested", new JSONObject().put("n", -7));
+
+        Object encoded = mSerializer.encode(value);
+        assertTrue(encoded instanceof String);
+        JSONObject decoded = (JSONObject) mSerializer.decode(encoded);
+
+        assertEquals("caf\u00e9 \"quoted\"", decoded.getString("name"));
+        assertEquals("[1,2.5,true,null]", decoded.getJSONArray("list").toString());
+        assertEquals(-7, decoded.getJSONObject("nested").getInt("n"));
+    }
+
+    @Test
+    public void encodesPlainJavaValues() throws Exception {
+        assertEquals("null", mSerializer.encode(null));
+        assertEquals("\"a\\\"b\"", mSerializer.encode("a\"b"));
+        assertEquals("42", mSerializer.encode(42));
+        assertEquals("true", mSerializer.encode(true));
+        assertEquals("[1,\"x\"]", mSerializer.encode(Arrays.asList(1, "x")));
+        assertEquals("{\"k\":\"v\"}", mSerializer.encode(Collections.singletonMap("k", "v")));
+    }
+
+    @Test
+    public void decodesBinaryFramesAsUtf8() throws Exception {
+        Object decoded = mSerializer.decode(ByteString.encodeUtf8("[\"\u20ac\"]"));
+        assertEquals("\u20ac", ((JSONArray) decoded).getString(0));
+    }
+
+    @Test
+    public void rejectsNestingDeeperThan256() throws Exception {
+        mSerializer.decode(nested(256));
+        mSerializer.decode("[\"" + nested(300) + "\",'" + nested(300) + "']");
+        try {
+            mSerializer.decode(nested(257));
+            fail();
+        } catch (EngineIOException expected) {
+        }
+        try {
+            mSerializer.decode(ByteString.encodeUtf8(nested(5000)));
+            fail();
+        } catch (EngineIOException expected) {
+        }
+    }
+
+    @Test(expected = EngineIOException.class)
+    public void rejectsUnsupportedTypes() throws Exception {
+        mSerializer.encode(new Object());
+    }
+
+    @Test(expected = EngineIOException.class)
+    public void rejectsMalformedJson() throws Exception {
+        mSerializer.decode("{\"a\":");
+    }
+
+    @Test(expected = EngineIOException.class)
+    public void rejectsOtherPayloads() throws Exception {
+        mSerializer.decode(42);
+    }
+
+    /**
+     * Returns arrays nested {@code depth} levels below the top-level array.
+     */
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i <= depth; i++) {
+            json.append('[');
+        }
+        for (int i = 0; i <= depth; i++) {
+            json.append(']');
+        }
+        return json.toString();
+    }
+}
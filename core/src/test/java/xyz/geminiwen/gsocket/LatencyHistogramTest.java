@@ -0,0 +1,111 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void startsEmpty() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.mean(), 0);
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    @Test
+    public void keepsSmallValuesExact() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 0; v < 8; v++) {
+            histogram.record(v);
+        }
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(3, histogram.percentile(50));
+        assertEquals(6, histogram.percentile(80));
+        assertEquals(7, histogram.percentile(100));
+        assertEquals(3.5, histogram.mean(), 0);
+    }
+
+    @Test
+    public void roundsUpToTheBucketBound() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(2000);
+        // 1000 falls in [960, 1023]
+        assertEquals(1023, histogram.percentile(50));
+        // the top bucket is capped at the largest recorded value
+        assertEquals(2000, histogram.percentile(100));
+    }
+
+    @Test
+    public void bucketsStayWithinAnEighthOfTheValue() throws Exception {
+        for (long v = 8; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(v);
+            histogram.record(Long.MAX_VALUE);
+            long bound = histogram.percentile(50);
+            assertTrue(v + " -> " + bound, bound >= v);
+            assertTrue(v + " -> " + bound, bound - v < v / 8.0);
+        }
+    }
+
+    @Test
+    public void neighbouringBucketsDoNotOverlap() throws Exception {
+        long previous = -1;
+        for (long v = 0; v < 4096; v++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(v);
+            histogram.record(Long.MAX_VALUE);
+            long bound = histogram.percentile(50);
+            assertTrue(v + " -> " + bound, bound >= previous);
+            if (bound != previous) {
+                // a new bucket starts right after the previous one ends
+                assertEquals(previous + 1, v);
+                previous = bound;
+            }
+        }
+    }
+
+    @Test
+    public void coversTheWholeRange() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+        assertEquals(Long.MAX_VALUE, histogram.max());
+    }
+
+    @Test
+    public void ignoresNegativeValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(5);
+        assertEquals(1, histogram.count());
+        assertEquals(5, histogram.max());
+        assertEquals(5, histogram.percentile(0));
+    }
+
+    @Test
+    public void countsRecordsFromManyThreads() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= 10000; i++) {
+                        histogram.record(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.count());
+        assertEquals(10000, histogram.max());
+        assertEquals(5000.5, histogram.mean(), 0);
+    }
+}
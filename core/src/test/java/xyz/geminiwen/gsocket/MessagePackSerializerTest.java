@@ -0,0 +1,108 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class MessagePackSerializerTest {
+
+    private final MessagePackSerializer mSerializer = MessagePackSerializer.INSTANCE;
+
+    @Test
+    public void roundTripsValues() throws Exception {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(i * 1000);
+        }
+        Map<Object, Object> value = new LinkedHashMap<>();
+        value.put("null", null);
+        value.put("bools", Arrays.asList(true, false));
+        value.put("ints", Arrays.asList(0, 127, 128, 255, 65535, 65536, -1, -32, -33, -129, -32769));
+        value.put("longs", Arrays.asList(1L << 40, -(1L << 40), Long.MAX_VALUE));
+        value.put("float", 1.5f);
+        value.put("double", 2.25);
+        value.put("short", "caf\u00e9");
+        value.put("long string", "a string well over thirty-one bytes long");
+        value.put("bytes", ByteString.encodeUtf8("bytes"));
+        value.put("list", list);
+        value.put(7, "non-string key");
+
+        Object encoded = mSerializer.encode(value);
+        assertTrue(encoded instanceof ByteString);
+
+        assertEquals(value, mSerializer.decode(encoded));
+    }
+
+    @Test
+    public void encodesJsonValuesAsMapsAndLists() throws Exception {
+        JSONObject json = new JSONObject().put("a", new JSONArray().put(1).put(JSONObject.NULL).put("x"));
+
+        Map<?, ?> decoded = (Map<?, ?>) mSerializer.decode(mSerializer.encode(json));
+
+        assertEquals(Arrays.asList(1, null, "x"), decoded.get("a"));
+    }
+
+    @Test
+    public void usesTheCompactForms() throws Exception {
+        assertEquals(ByteString.decodeHex("c0"), mSerializer.encode(null));
+        assertEquals(ByteString.decodeHex("7f"), mSerializer.encode(127));
+        assertEquals(ByteString.decodeHex("e0"), mSerializer.encode(-32));
+        assertEquals(ByteString.decodeHex("a161"), mSerializer.encode("a"));
+        assertEquals(ByteString.decodeHex("920102"), mSerializer.encode(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void rejectsMalformedPayloads() throws Exception {
+        Object[] malformed = {
+                "text",
+                ByteString.decodeHex("92"),         // array missing its items
+                ByteString.decodeHex("a5616263"),   // string shorter than its length
+                ByteString.decodeHex("0101"),       // trailing bytes
+                ByteString.decodeHex("c1"),         // never used
+                ByteString.decodeHex("cfffffffffffffffff"),
+                ByteString.decodeHex("dbffffffff")
+        };
+        for (Object payload : malformed) {
+            try {
+                mSerializer.decode(payload);
+                fail(String.valueOf(payload));
+            } catch (EngineIOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsNestingDeeperThan256() throws Exception {
+        mSerializer.decode(nested(256));
+        try {
+            mSerializer.decode(nested(257));
+            fail();
+        } catch (EngineIOException expected) {
+        }
+    }
+
+    @Test(expected = EngineIOException.class)
+    public void rejectsUnsupportedTypes() throws Exception {
+        mSerializer.encode(new Object());
+    }
+
+    /**
+     * Returns arrays nested {@code depth} levels below the top-level array.
+     */
+    private static ByteString nested(int depth) {
+        byte[] bytes = new byte[depth + 1];
+        Arrays.fill(bytes, (byte) 0x91);
+        bytes[depth] = (byte) 0x90;
+        return ByteString.of(bytes);
+    }
+}
@@ -0,0 +1,116 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OffsetWindowTest {
+
+    @Test
+    public void rejectsDuplicatesInTheWindow() throws Exception {
+        OffsetWindow window = new OffsetWindow(4);
+        assertTrue(window.add(1));
+        assertTrue(window.add(2));
+        assertFalse(window.add(1));
+        assertFalse(window.add(2));
+        assertTrue(window.contains(1));
+        assertFalse(window.contains(3));
+    }
+
+    @Test
+    public void forgetsTheOldestOffsetWhenFull() throws Exception {
+        OffsetWindow window = new OffsetWindow(3);
+        window.add(10);
+        window.add(11);
+        window.add(12);
+        window.add(13);
+
+        assertFalse(window.contains(10));
+        assertTrue(window.contains(11));
+        assertTrue(window.contains(13));
+        // out of the window, so it counts as new again
+        assertTrue(window.add(10));
+        assertFalse(window.contains(11));
+    }
+
+    @Test
+    public void keepsArrivalOrderAcrossManyWraps() throws Exception {
+        OffsetWindow window = new OffsetWindow(5);
+        for (long offset = 0; offset < 1000; offset++) {
+            assertTrue(window.add(offset));
+            for (long seen = Math.max(0, offset - 4); seen <= offset; seen++) {
+                assertTrue(offset + "/" + seen, window.contains(seen));
+            }
+            if (offset >= 5) {
+                assertFalse(window.contains(offset - 5));
+            }
+        }
+    }
+
+    @Test
+    public void handlesOffsetsOutOfOrder() throws Exception {
+        OffsetWindow window = new OffsetWindow(2);
+        window.add(5);
+        window.add(3);
+        assertFalse(window.add(5));
+        // 5 arrived first, so it goes first
+        window.add(4);
+        assertFalse(window.contains(5));
+        assertTrue(window.contains(3));
+    }
+
+    @Test
+    public void matchesASetOverTheLastOffsets() throws Exception {
+        // colliding offsets exercise the backward-shift deletion
+        Random random = new Random(7);
+        int capacity = 64;
+        OffsetWindow window = new OffsetWindow(capacity);
+        long[] recent = new long[capacity];
+        int next = 0;
+        int size = 0;
+        for (int i = 0; i < 20000; i++) {
+            long offset = random.nextInt(200) * 1024L;
+            boolean known = false;
+            for (int j = 0; j < size; j++) {
+                known |= recent[j] == offset;
+            }
+            assertEquals(String.valueOf(offset), !known, window.add(offset));
+            if (!known) {
+                recent[next] = offset;
+                next = (next + 1) % capacity;
+                size = Math.min(size + 1, capacity);
+            }
+        }
+        for (int j = 0; j < size; j++) {
+            assertTrue(window.contains(recent[j]));
+        }
+    }
+
+    @Test
+    public void clearForgetsEverything() throws Exception {
+        OffsetWindow window = new OffsetWindow(3);
+        window.add(1);
+        window.add(2);
+        window.clear();
+
+        assertFalse(window.contains(1));
+        assertTrue(window.add(2));
+        assertTrue(window.add(3));
+        assertTrue(window.add(4));
+        // the ring starts over too: 2 is the oldest now
+        window.add(5);
+        assertFalse(window.contains(2));
+        assertTrue(window.contains(3));
+    }
+
+    @Test
+    public void holdsAtLeastOneOffset() throws Exception {
+        OffsetWindow window = new OffsetWindow(0);
+        assertTrue(window.add(1));
+        assertFalse(window.add(1));
+        assertTrue(window.add(2));
+        assertTrue(window.add(1));
+    }
+}
@@ -0,0 +1,151 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.exceptions.MissingBackpressureException;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.*;
+
+public class OperatorBackpressureTest {
+
+    // the key of "k:v" is "k"; packets without a colon have none
+    private static final KeyExtractor KEYS = new KeyExtractor() {
+        @Override
+        public Object keyOf(Packet packet) {
+            String data = (String) packet.data;
+            int colon = data.indexOf(':');
+            return colon < 0 ? null : data.substring(0, colon);
+        }
+    };
+
+    private final PublishSubject<Packet> mSource = PublishSubject.create();
+
+    private TestSubscriber<Packet> subscribe(Options.Backpressure strategy, KeyExtractor keys,
+                                             long capacity) {
+        TestSubscriber<Packet> subscriber = new TestSubscriber<>(0L);
+        mSource.lift(new OperatorBackpressure(strategy, keys, capacity)).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private void emit(String... values) {
+        for (String value : values) {
+            mSource.onNext(new Packet<>(Packet.MESSAGE, value));
+        }
+    }
+
+    private static List<Object> data(TestSubscriber<Packet> subscriber) {
+        List<Object> data = new ArrayList<>();
+        for (Packet packet : subscriber.getOnNextEvents()) {
+            data.add(packet.data);
+        }
+        return data;
+    }
+
+    private static List<Object> list(Object... values) {
+        List<Object> list = new ArrayList<>();
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Test
+    public void conflatesBufferedMessagesInPlace() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.CONFLATE, KEYS, 16);
+        emit("a:1", "chat", "a:2", "b:1", "a:3");
+
+        subscriber.requestMore(10);
+        assertEquals(list("a:3", "chat", "b:1"), data(subscriber));
+    }
+
+    @Test
+    public void conflatesAnewOnceDelivered() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.CONFLATE, KEYS, 16);
+        emit("a:1", "a:2");
+        subscriber.requestMore(1);
+        emit("a:3", "a:4");
+        subscriber.requestMore(10);
+
+        assertEquals(list("a:2", "a:4"), data(subscriber));
+    }
+
+    @Test
+    public void neverConflatesControlPackets() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.CONFLATE, KEYS, 16);
+        mSource.onNext(new Packet<>(Packet.CLOSE, "a:1"));
+        mSource.onNext(new Packet<>(Packet.CLOSE, "a:2"));
+
+        subscriber.requestMore(10);
+        assertEquals(list("a:1", "a:2"), data(subscriber));
+    }
+
+    @Test
+    public void conflateWithoutKeysBuffers() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.CONFLATE, null, 16);
+        emit("a:1", "a:2");
+
+        subscriber.requestMore(10);
+        assertEquals(list("a:1", "a:2"), data(subscriber));
+    }
+
+    @Test
+    public void bufferFailsBeyondCapacity() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.BUFFER, null, 2);
+        emit("1", "2", "3");
+
+        subscriber.requestMore(10);
+        assertEquals(list("1", "2"), data(subscriber));
+        subscriber.assertError(MissingBackpressureException.class);
+        assertFalse(mSource.hasObservers());
+    }
+
+    @Test
+    public void dropDropsUnrequestedMessages() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.DROP, null, 16);
+        subscriber.requestMore(1);
+        emit("1", "2");
+        mSource.onNext(new Packet<>(Packet.CLOSE, "close"));
+
+        subscriber.requestMore(10);
+        assertEquals(list("1", "close"), data(subscriber));
+    }
+
+    @Test
+    public void latestKeepsTheNewestMessage() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.LATEST, null, 16);
+        emit("1", "2");
+        mSource.onNext(new Packet<>(Packet.CLOSE, "close"));
+        emit("3");
+
+        subscriber.requestMore(10);
+        assertEquals(list("close", "3"), data(subscriber));
+    }
+
+    @Test
+    public void slowSubscriberDoesNotHoldUpOthers() throws Exception {
+        TestSubscriber<Packet> slow = subscribe(Options.Backpressure.DROP, null, 16);
+        TestSubscriber<Packet> fast = new TestSubscriber<>();
+        mSource.lift(new OperatorBackpressure(Options.Backpressure.DROP, null, 16)).subscribe(fast);
+        emit("1", "2", "3");
+
+        slow.assertNoValues();
+        assertEquals(list("1", "2", "3"), data(fast));
+    }
+
+    @Test
+    public void completesAfterTheBuffer() throws Exception {
+        TestSubscriber<Packet> subscriber = subscribe(Options.Backpressure.BUFFER, null, 16);
+        emit("1");
+        mSource.onCompleted();
+        subscriber.assertNotCompleted();
+
+        subscriber.requestMore(1);
+        assertEquals(list("1"), data(subscriber));
+        subscriber.assertCompleted();
+    }
+}
@@ -0,0 +1,252 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class OutboundJournalTest {
+
+    private static final int HEADER = 64;
+    // a record holding a two-char text packet without an id
+    private static final int RECORD = 17 + 2;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("journal", ".bin");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mFile.delete();
+    }
+
+    private OutboundJournal open(int records, OutboundJournal.Eviction eviction) throws Exception {
+        return new OutboundJournal(mFile, HEADER + RECORD * records, eviction);
+    }
+
+    private static Packet[] text(String... values) {
+        Packet[] packets = new Packet[values.length];
+        for (int i = 0; i < values.length; i++) {
+            packets[i] = new Packet<>(Packet.MESSAGE, values[i]);
+        }
+        return packets;
+    }
+
+    private static void append(OutboundJournal journal, String... values) {
+        journal.append(WebSocket.Priority.INTERACTIVE, text(values), null);
+    }
+
+    private static List<Object> drain(OutboundJournal journal, int max) {
+        SendQueue queue = new SendQueue();
+        journal.drainTo(queue, max);
+        List<Packet> batch = new ArrayList<>();
+        for (WebSocket.Priority priority : WebSocket.Priority.values()) {
+            while (queue.pollTo(priority, batch) >= 0) {
+            }
+        }
+        List<Object> data = new ArrayList<>();
+        for (Packet packet : batch) {
+            data.add(packet.data);
+        }
+        return data;
+    }
+
+    private static List<Object> list(Object... values) {
+        List<Object> list = new ArrayList<>();
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Test
+    public void drainsInOrder() throws Exception {
+        OutboundJournal journal = open(4, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        assertEquals(3, journal.size());
+        assertEquals(list("a0", "a1"), drain(journal, 2));
+        assertEquals(list("a2"), drain(journal, 10));
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void wrapsAroundTheEnd() throws Exception {
+        OutboundJournal journal = open(3, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        assertEquals(list("a0", "a1"), drain(journal, 2));
+        // goes to the start of the file, ahead of a2 there
+        append(journal, "a3");
+        append(journal, "a4");
+        assertEquals(list("a2", "a3", "a4"), drain(journal, 10));
+    }
+
+    @Test
+    public void wrapsRecordsThatDoNotFitAtTheEnd() throws Exception {
+        OutboundJournal journal = new OutboundJournal(mFile, HEADER + RECORD * 3 + 10,
+                OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        assertEquals(list("a0"), drain(journal, 1));
+        // 10 bytes left at the end, marked as unused
+        append(journal, "a3");
+        assertEquals(list("a1", "a2", "a3"), drain(journal, 10));
+    }
+
+    @Test
+    public void survivesReopenAfterWrapping() throws Exception {
+        OutboundJournal journal = open(3, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        drain(journal, 2);
+        append(journal, "a3");
+
+        OutboundJournal reopened = open(3, OutboundJournal.Eviction.REJECT_NEW);
+        assertEquals(2, reopened.size());
+        assertEquals(list("a2", "a3"), drain(reopened, 10));
+    }
+
+    @Test
+    public void keepsPacketTypesAndBinaryData() throws Exception {
+        OutboundJournal journal = new OutboundJournal(mFile, 1024, OutboundJournal.Eviction.REJECT_NEW);
+        journal.append(WebSocket.Priority.BULK, new Packet[]{
+                new Packet<>(Packet.MESSAGE, new byte[]{1, 2, 3}),
+                new Packet<String>(Packet.NOOP)
+        }, null);
+
+        SendQueue queue = new SendQueue();
+        journal.drainTo(queue, 10);
+        List<Packet> batch = new ArrayList<>();
+        assertEquals(-1, queue.pollTo(WebSocket.Priority.INTERACTIVE, batch));
+        assertTrue(queue.pollTo(WebSocket.Priority.BULK, batch) >= 0);
+        assertEquals(2, batch.size());
+        assertEquals(Packet.MESSAGE, batch.get(0).type);
+        assertEquals(ByteString.of((byte) 1, (byte) 2, (byte) 3), batch.get(0).data);
+        assertEquals(Packet.NOOP, batch.get(1).type);
+        assertNull(batch.get(1).data);
+    }
+
+    @Test
+    public void dropsOldestWhenFull() throws Exception {
+        OutboundJournal journal = open(3, OutboundJournal.Eviction.DROP_OLDEST);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        append(journal, "a3");
+        assertEquals(1, journal.evicted());
+        assertEquals(list("a1", "a2", "a3"), drain(journal, 10));
+    }
+
+    @Test
+    public void evictsWholeSends() throws Exception {
+        OutboundJournal journal = open(4, OutboundJournal.Eviction.DROP_OLDEST);
+        append(journal, "a0", "a1", "a2");
+        append(journal, "b0");
+        append(journal, "c0");
+        // all of a, not just the one record c needs
+        assertEquals(3, journal.evicted());
+        assertEquals(list("b0", "c0"), drain(journal, 10));
+    }
+
+    @Test
+    public void drainsWholeSends() throws Exception {
+        OutboundJournal journal = open(4, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0", "a1", "a2");
+        append(journal, "b0");
+        assertEquals(list("a0", "a1", "a2"), drain(journal, 1));
+        assertEquals(list("b0"), drain(journal, 1));
+    }
+
+    @Test
+    public void rejectsNewWhenFull() throws Exception {
+        OutboundJournal journal = open(2, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        try {
+            append(journal, "a2");
+            fail();
+        } catch (EngineIOException expected) {
+        }
+        assertEquals(0, journal.evicted());
+        assertEquals(list("a0", "a1"), drain(journal, 10));
+    }
+
+    @Test
+    public void clearsEverything() throws Exception {
+        OutboundJournal journal = open(3, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        journal.append(WebSocket.Priority.INTERACTIVE, text("a1"), "m1");
+        journal.clear();
+        assertTrue(journal.isEmpty());
+        assertTrue(journal.append(WebSocket.Priority.INTERACTIVE, text("a2"), "m1"));
+        assertEquals(list("a2"), drain(journal, 10));
+    }
+
+    @Test(expected = EngineIOException.class)
+    public void rejectsPacketLargerThanTheJournal() throws Exception {
+        OutboundJournal journal = open(2, OutboundJournal.Eviction.DROP_OLDEST);
+        journal.append(WebSocket.Priority.INTERACTIVE, text(new String(new char[RECORD * 2])), null);
+    }
+
+    @Test
+    public void ignoresDuplicateMessageIds() throws Exception {
+        OutboundJournal journal = open(4, OutboundJournal.Eviction.REJECT_NEW);
+        assertTrue(journal.append(WebSocket.Priority.INTERACTIVE, text("a0"), "m1"));
+        assertFalse(journal.append(WebSocket.Priority.INTERACTIVE, text("a1"), "m1"));
+        assertEquals(1, journal.size());
+        drain(journal, 10);
+        // taken, so the id may be journaled again
+        assertTrue(journal.append(WebSocket.Priority.INTERACTIVE, text("a2"), "m1"));
+    }
+
+    @Test
+    public void prependsAheadOfTheHead() throws Exception {
+        OutboundJournal journal = open(4, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        append(journal, "a2");
+        drain(journal, 1);
+        journal.prepend(WebSocket.Priority.INTERACTIVE, text("p0"));
+        assertEquals(list("p0", "a1", "a2"), drain(journal, 10));
+    }
+
+    @Test
+    public void prependsAtTheEndWhenTheHeadIsAtTheStart() throws Exception {
+        OutboundJournal journal = open(6, OutboundJournal.Eviction.REJECT_NEW);
+        append(journal, "a0");
+        append(journal, "a1");
+        // followed by a jump back to a0
+        journal.prepend(WebSocket.Priority.INTERACTIVE, text("p0", "p1"));
+        append(journal, "a2");
+
+        OutboundJournal reopened = open(6, OutboundJournal.Eviction.REJECT_NEW);
+        assertEquals(5, reopened.size());
+        assertEquals(list("p0", "p1", "a0", "a1", "a2"), drain(reopened, 10));
+    }
+
+    @Test
+    public void prependNeverEvictsNewerSends() throws Exception {
+        OutboundJournal journal = open(2, OutboundJournal.Eviction.DROP_OLDEST);
+        append(journal, "a0");
+        append(journal, "a1");
+        assertFalse(journal.prepend(WebSocket.Priority.INTERACTIVE, text("p0")));
+        assertEquals(1, journal.evicted());
+        assertEquals(list("a0", "a1"), drain(journal, 10));
+    }
+}
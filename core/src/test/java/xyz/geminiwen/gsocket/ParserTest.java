@@ -0,0 +1,159 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class ParserTest {
+
+    // U+20AC is 1 UTF-16 char and 3 UTF-8 bytes, U+1F600 2 chars and 4 bytes
+    private static final String EURO = "\u20ac";
+    private static final String SMILE = "\ud83d\ude00";
+
+    @Test
+    public void encodesPacket() throws Exception {
+        assertEquals("4hello", Parser.encodePacketString(new Packet<>(Packet.MESSAGE, "hello")));
+        assertEquals("2", Parser.encodePacketString(new Packet<String>(Packet.PING)));
+    }
+
+    @Test
+    public void appendsToTheCallersBuilder() throws Exception {
+        StringBuilder out = new StringBuilder("x");
+        Parser.encodePacket(new Packet<>(Packet.MESSAGE, "a"), out, false);
+        Parser.encodePacket(new Packet<String>(Packet.PONG), out, false);
+        assertEquals("x4a3", out.toString());
+    }
+
+    @Test
+    public void decodesPacket() throws Exception {
+        Packet<String> packet = Parser.decodePacket("4hello");
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals("hello", packet.data);
+
+        packet = Parser.decodePacket("3");
+        assertEquals(Packet.PONG, packet.type);
+        assertNull(packet.data);
+
+        assertEquals(Packet.ERROR, Parser.decodePacket("9x").type);
+        assertEquals(Packet.ERROR, Parser.decodePacket("x").type);
+        assertEquals(Packet.ERROR, Parser.decodePacket("").type);
+    }
+
+    @Test
+    public void readsPacketType() throws Exception {
+        assertEquals(Packet.OPEN, Parser.packetType("0{}"));
+        assertEquals(Packet.NOOP, Parser.packetType("6"));
+        assertEquals(Packet.ERROR, Parser.packetType("7"));
+        assertEquals(Packet.ERROR, Parser.packetType("/"));
+        assertEquals(Packet.ERROR, Parser.packetType(""));
+    }
+
+    @Test
+    public void decodesPacketView() throws Exception {
+        Packet<PayloadView> packet = Parser.decodePacketView("4hello");
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals("hello", packet.data.toString());
+        assertTrue(packet.data.startsWith("he"));
+        assertEquals(3, packet.data.indexOf('l', 3));
+        assertEquals("ell", packet.data.subSequence(1, 4).toString());
+
+        assertNull(Parser.decodePacketView("2").data);
+        assertEquals(Packet.ERROR, Parser.decodePacketView("9").type);
+    }
+
+    @Test
+    public void encodesBinaryPacket() throws Exception {
+        Buffer sink = new Buffer();
+        Parser.encodePacketBinary(new Packet<>(Packet.MESSAGE, ByteString.of((byte) 1, (byte) 2)), sink);
+        assertEquals(ByteString.of((byte) 4, (byte) 1, (byte) 2), sink.readByteString());
+
+        assertArrayEquals(new byte[]{4, 7}, Parser.encodePacketBinary(new Packet<>(Packet.MESSAGE, new byte[]{7})));
+    }
+
+    @Test
+    public void decodesBinaryPacket() throws Exception {
+        Packet<ByteString> packet = Parser.decodePacket(ByteString.of((byte) 4, (byte) 1, (byte) 2));
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals(ByteString.of((byte) 1, (byte) 2), packet.data);
+        assertEquals(Packet.ERROR, Parser.decodePacket(ByteString.EMPTY).type);
+        assertEquals(Packet.ERROR, Parser.decodePacket(ByteString.of((byte) 9)).type);
+
+        Packet<byte[]> bytes = Parser.decodePacket(new byte[]{4, 1});
+        assertEquals(Packet.MESSAGE, bytes.type);
+        assertArrayEquals(new byte[]{1}, bytes.data);
+    }
+
+    @Test
+    public void encodesEmptyPayload() throws Exception {
+        assertEquals("0:", Parser.encodePayload(new Packet[0], new StringBuilder()).toString());
+    }
+
+    @Test
+    public void countsTextPayloadLengthsInChars() throws Exception {
+        Packet[] packets = {
+                new Packet<>(Packet.MESSAGE, EURO + SMILE),
+                new Packet<String>(Packet.PING)
+        };
+        String payload = Parser.encodePayload(packets, new StringBuilder()).toString();
+        assertEquals("4:4" + EURO + SMILE + "1:2", payload);
+    }
+
+    @Test
+    public void base64EncodesBinaryInTextPayload() throws Exception {
+        Packet[] packets = {new Packet<>(Packet.MESSAGE, new byte[]{1, 2})};
+        assertEquals("6:b4AQI=", Parser.encodePayload(packets, new StringBuilder()).toString());
+    }
+
+    @Test
+    public void roundTripsTextPayload() throws Exception {
+        Packet[] packets = {
+                new Packet<>(Packet.MESSAGE, "a" + EURO + SMILE),
+                new Packet<>(Packet.MESSAGE, ByteString.of((byte) 0, (byte) 0xFF)),
+                new Packet<String>(Packet.NOOP)
+        };
+        List<Packet> decoded = Parser.decodePayload(
+                Parser.encodePayload(packets, new StringBuilder()).toString());
+
+        assertEquals(3, decoded.size());
+        assertEquals(Packet.MESSAGE, decoded.get(0).type);
+        assertEquals("a" + EURO + SMILE, decoded.get(0).data);
+        assertEquals(Packet.MESSAGE, decoded.get(1).type);
+        assertEquals(ByteString.of((byte) 0, (byte) 0xFF), decoded.get(1).data);
+        assertEquals(Packet.NOOP, decoded.get(2).type);
+    }
+
+    @Test
+    public void countsBinaryPayloadLengthsInBytes() throws Exception {
+        Packet[] packets = {
+                new Packet<>(Packet.MESSAGE, EURO),
+                new Packet<>(Packet.MESSAGE, new byte[]{1, 2})
+        };
+        Buffer sink = new Buffer();
+        Parser.encodePayloadAsBinary(packets, sink);
+
+        Buffer expected = new Buffer()
+                .writeByte(0).writeByte(4).writeByte(0xFF).writeUtf8("4" + EURO)
+                .writeByte(1).writeByte(3).writeByte(0xFF).writeByte(4).writeByte(1).writeByte(2);
+        assertEquals(expected.readByteString(), sink.readByteString());
+    }
+
+    @Test
+    public void reportsMalformedTextPayload() throws Exception {
+        assertError(Parser.decodePayload("x:4a"));
+        assertError(Parser.decodePayload(":4a"));
+        assertError(Parser.decodePayload("3:b9AA"));
+        // shorter than its length
+        assertError(Parser.decodePayload("5:4a"));
+        // a length that splits a surrogate pair
+        assertError(Parser.decodePayload("2:4" + SMILE));
+    }
+
+    private static void assertError(List<Packet> packets) {
+        assertEquals(Packet.ERROR, packets.get(packets.size() - 1).type);
+    }
+}
@@ -0,0 +1,120 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class PayloadDecoderTest {
+
+    private static final String EURO = "\u20ac";
+    private static final String SMILE = "\ud83d\ude00";
+
+    @Test
+    public void readsTextPayload() throws Exception {
+        PayloadDecoder decoder = new PayloadDecoder(new Buffer().writeUtf8("3:4" + SMILE + "6:b4AQI=1:2"));
+        Packet packet = decoder.next();
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals(SMILE, packet.data);
+        packet = decoder.next();
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals(ByteString.of((byte) 1, (byte) 2), packet.data);
+        assertEquals(Packet.PING, decoder.next().type);
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void skipsEmptyPayload() throws Exception {
+        assertNull(new PayloadDecoder(new Buffer().writeUtf8("0:")).next());
+        assertNull(new PayloadDecoder(new Buffer()).next());
+    }
+
+    @Test
+    public void roundTripsBinaryPayload() throws Exception {
+        byte[] large = new byte[1234];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        Packet[] packets = {
+                new Packet<>(Packet.MESSAGE, SMILE + "x"),
+                new Packet<>(Packet.MESSAGE, large),
+                new Packet<String>(Packet.PONG)
+        };
+        Buffer sink = new Buffer();
+        Parser.encodePayloadAsBinary(packets, sink);
+
+        PayloadDecoder decoder = new PayloadDecoder(sink);
+        Packet packet = decoder.next();
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals(SMILE + "x", packet.data);
+        packet = decoder.next();
+        assertEquals(Packet.MESSAGE, packet.type);
+        assertEquals(ByteString.of(large), packet.data);
+        assertEquals(Packet.PONG, decoder.next().type);
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void readsMixedPayload() throws Exception {
+        Buffer source = new Buffer()
+                .writeUtf8("2:4" + EURO)
+                .writeByte(1).writeByte(2).writeByte(0xFF).writeByte(4).writeByte(7);
+        PayloadDecoder decoder = new PayloadDecoder(source);
+        assertEquals(EURO, decoder.next().data);
+        assertEquals(ByteString.of((byte) 7), decoder.next().data);
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void readsPacketsAsTheyArrive() throws Exception {
+        Buffer source = new Buffer().writeUtf8("2:4a");
+        PayloadDecoder decoder = new PayloadDecoder(source);
+        assertEquals("a", decoder.next().data);
+        source.writeUtf8("2:4b");
+        assertEquals("b", decoder.next().data);
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void stopsAfterAMalformedLength() throws Exception {
+        PayloadDecoder decoder = new PayloadDecoder(new Buffer().writeUtf8("x:4a2:4b"));
+        assertEquals(Packet.ERROR, decoder.next().type);
+        assertNull(decoder.next());
+    }
+
+    @Test
+    public void rejectsTooManyLengthDigits() throws Exception {
+        Buffer text = new Buffer().writeUtf8("12345678901:4a");
+        assertEquals(Packet.ERROR, new PayloadDecoder(text).next().type);
+
+        Buffer binary = new Buffer().writeByte(0);
+        for (int i = 0; i < 11; i++) {
+            binary.writeByte(1);
+        }
+        binary.writeByte(0xFF);
+        assertEquals(Packet.ERROR, new PayloadDecoder(binary).next().type);
+    }
+
+    @Test
+    public void rejectsBadBinaryLength() throws Exception {
+        assertEquals(Packet.ERROR, new PayloadDecoder(
+                new Buffer().writeByte(1).writeByte(10).writeByte(0xFF)).next().type);
+        assertEquals(Packet.ERROR, new PayloadDecoder(
+                new Buffer().writeByte(1).writeByte(0xFF)).next().type);
+        assertEquals(Packet.ERROR, new PayloadDecoder(
+                new Buffer().writeByte(1).writeByte(0).writeByte(0xFF)).next().type);
+    }
+
+    @Test
+    public void rejectsBadBase64() throws Exception {
+        assertEquals(Packet.ERROR, new PayloadDecoder(new Buffer().writeUtf8("4:b4**")).next().type);
+        assertEquals(Packet.ERROR, new PayloadDecoder(new Buffer().writeUtf8("4:b9AA")).next().type);
+    }
+
+    @Test(expected = java.io.EOFException.class)
+    public void failsOnATruncatedSource() throws Exception {
+        new PayloadDecoder(new Buffer().writeUtf8("5:4a")).next();
+    }
+}
@@ -0,0 +1,131 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SendQueueTest {
+
+    private final SendQueue mQueue = new SendQueue();
+
+    private static Packet message(String data) {
+        return new Packet<>(Packet.MESSAGE, data);
+    }
+
+    private List<Object> pollAll() {
+        List<Packet> batch = new ArrayList<>();
+        for (WebSocket.Priority priority : WebSocket.Priority.values()) {
+            while (mQueue.pollTo(priority, batch) >= 0) {
+            }
+        }
+        List<Object> data = new ArrayList<>();
+        for (Packet packet : batch) {
+            data.add(packet.data);
+        }
+        return data;
+    }
+
+    private static List<Object> list(Object... values) {
+        List<Object> list = new ArrayList<>();
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Test
+    public void conflatesInPlace() throws Exception {
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "price", message("p1"));
+        mQueue.addAll(WebSocket.Priority.INTERACTIVE, new Packet[]{message("chat")});
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "price", message("p2"));
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "price", message("p3"));
+
+        assertEquals(2, mQueue.size());
+        assertEquals(list("p3", "chat"), pollAll());
+        assertTrue(mQueue.isEmpty());
+    }
+
+    @Test
+    public void keepsKeysApart() throws Exception {
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "a", message("a1"));
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "b", message("b1"));
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "a", message("a2"));
+
+        assertTrue(mQueue.contains("a"));
+        assertFalse(mQueue.contains("c"));
+        assertEquals(list("a2", "b1"), pollAll());
+    }
+
+    @Test
+    public void queuesAnewOncePolled() throws Exception {
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "price", message("p1"));
+        List<Packet> batch = new ArrayList<>();
+        mQueue.pollTo(WebSocket.Priority.INTERACTIVE, batch);
+        assertFalse(mQueue.contains("price"));
+
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "price", message("p2"));
+        assertEquals(1, mQueue.size());
+        assertEquals(list("p2"), pollAll());
+    }
+
+    @Test
+    public void keepsTheFirstLaneOfAKey() throws Exception {
+        mQueue.conflate(WebSocket.Priority.BULK, "k", message("k1"));
+        mQueue.addAll(WebSocket.Priority.INTERACTIVE, new Packet[]{message("chat")});
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "k", message("k2"));
+
+        assertEquals(list("chat", "k2"), pollAll());
+    }
+
+    @Test
+    public void pollsHigherLanesFirst() throws Exception {
+        mQueue.addAll(WebSocket.Priority.BULK, new Packet[]{message("bulk")});
+        mQueue.addAll(WebSocket.Priority.INTERACTIVE, new Packet[]{message("chat")});
+        mQueue.addAll(WebSocket.Priority.CONTROL, new Packet[]{new Packet<>(Packet.PING, "ctl")});
+
+        assertEquals(list("ctl", "chat", "bulk"), pollAll());
+    }
+
+    @Test
+    public void pollsASendAsOneEntry() throws Exception {
+        mQueue.addAll(WebSocket.Priority.INTERACTIVE, new Packet[]{message("event"), message("attachment")});
+        mQueue.addAll(WebSocket.Priority.INTERACTIVE, new Packet[]{message("next")});
+        assertEquals(3, mQueue.size());
+
+        List<Packet> batch = new ArrayList<>();
+        assertEquals("event".length() + "attachment".length(),
+                mQueue.pollTo(WebSocket.Priority.INTERACTIVE, batch));
+        assertEquals(2, batch.size());
+        assertEquals(1, mQueue.size());
+    }
+
+    @Test
+    public void clearForgetsKeys() throws Exception {
+        mQueue.conflate(WebSocket.Priority.INTERACTIVE, "k", message("k1"));
+        mQueue.clear();
+
+        assertTrue(mQueue.isEmpty());
+        assertFalse(mQueue.contains("k"));
+        assertEquals(-1, mQueue.pollTo(WebSocket.Priority.INTERACTIVE, new ArrayList<Packet>()));
+    }
+
+    @Test
+    public void classifiesSends() throws Exception {
+        assertEquals(WebSocket.Priority.CONTROL,
+                SendQueue.classify(new Packet[]{new Packet<String>(Packet.PING)}, 4));
+        assertEquals(WebSocket.Priority.INTERACTIVE,
+                SendQueue.classify(new Packet[]{new Packet<String>(Packet.PING), message("abc")}, 4));
+        assertEquals(WebSocket.Priority.BULK,
+                SendQueue.classify(new Packet[]{message("abc"), message("abcd")}, 4));
+    }
+
+    @Test
+    public void measuresPayloads() throws Exception {
+        assertEquals(3, SendQueue.sizeOf(message("abc")));
+        assertEquals(2, SendQueue.sizeOf(new Packet<>(Packet.MESSAGE, new byte[2])));
+        assertEquals(0, SendQueue.sizeOf(new Packet<String>(Packet.PING)));
+    }
+}
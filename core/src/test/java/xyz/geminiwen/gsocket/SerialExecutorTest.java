@@ -0,0 +1,209 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SerialExecutorTest {
+
+    /**
+     * Holds the submitted runnables until the test runs them.
+     */
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+        boolean mReject;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (mReject) {
+                throw new RejectedExecutionException();
+            }
+            mPending.add(command);
+        }
+
+        synchronized Runnable next() {
+            return mPending.poll();
+        }
+
+        synchronized int pending() {
+            return mPending.size();
+        }
+    }
+
+    private static Runnable record(final List<Integer> ran, final int value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void runsTasksOneAtATimeInOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            SerialExecutor executor = new SerialExecutor(pool, 1024);
+            final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger overlaps = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++) {
+                final int value = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        ran.add(value);
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(0, overlaps.get());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, (int) ran.get(i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void givesTheThreadBackAfterABatch() throws Exception {
+        ManualExecutor pool = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(pool, 1024);
+        List<Integer> ran = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(record(ran, i));
+        }
+        assertEquals(1, pool.pending());
+
+        pool.next().run();
+        assertEquals(64, ran.size());
+        // the rest waits for another turn
+        assertEquals(1, pool.pending());
+
+        pool.next().run();
+        assertEquals(100, ran.size());
+        assertEquals(0, pool.pending());
+
+        executor.execute(record(ran, 100));
+        assertEquals(1, pool.pending());
+    }
+
+    @Test
+    public void keepsGoingAfterAnException() throws Exception {
+        ManualExecutor pool = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(pool, 1024);
+        List<Integer> ran = new ArrayList<>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        executor.execute(record(ran, 1));
+
+        try {
+            pool.next().run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(ran.isEmpty());
+
+        pool.next().run();
+        assertEquals(Collections.singletonList(1), ran);
+    }
+
+    @Test
+    public void dropsTheQueueWhenTheExecutorRejects() throws Exception {
+        ManualExecutor pool = new ManualExecutor();
+        pool.mReject = true;
+        SerialExecutor executor = new SerialExecutor(pool, 1024);
+        List<Integer> ran = new ArrayList<>();
+        try {
+            executor.execute(record(ran, 0));
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+
+        pool.mReject = false;
+        executor.execute(record(ran, 1));
+        pool.next().run();
+        assertEquals(Collections.singletonList(1), ran);
+    }
+
+    @Test
+    public void putWaitsWhileTheQueueIsFull() throws Exception {
+        final ManualExecutor pool = new ManualExecutor();
+        final SerialExecutor executor = new SerialExecutor(pool, 2);
+        final List<Integer> ran = Collections.synchronizedList(new ArrayList<Integer>());
+        executor.put(record(ran, 0));
+        executor.put(record(ran, 1));
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.put(record(ran, 2));
+            }
+        });
+        reader.start();
+        reader.join(100);
+        assertTrue(reader.isAlive());
+
+        // taking a task frees a place
+        pool.next().run();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        while (pool.pending() > 0) {
+            pool.next().run();
+        }
+        assertEquals(3, ran.size());
+        assertEquals(2, (int) ran.get(2));
+    }
+
+    @Test
+    public void executeNeverWaits() throws Exception {
+        ManualExecutor pool = new ManualExecutor();
+        SerialExecutor executor = new SerialExecutor(pool, 1);
+        List<Integer> ran = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            executor.execute(record(ran, i));
+        }
+        pool.next().run();
+        assertEquals(10, ran.size());
+    }
+
+    @Test
+    public void aTaskNeverWaitsForItself() throws Exception {
+        ManualExecutor pool = new ManualExecutor();
+        final SerialExecutor executor = new SerialExecutor(pool, 1);
+        final List<Integer> ran = new ArrayList<>();
+        executor.put(new Runnable() {
+            @Override
+            public void run() {
+                executor.put(record(ran, 1));
+                executor.put(record(ran, 2));
+            }
+        });
+
+        pool.next().run();
+        assertEquals(2, ran.size());
+    }
+}
@@ -0,0 +1,138 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SocketParserTest {
+
+    private static SocketPacket packet(int type, String nsp, int id, Object data) {
+        SocketPacket packet = new SocketPacket(type, data);
+        packet.nsp = nsp;
+        packet.id = id;
+        return packet;
+    }
+
+    @Test
+    public void encodesConnectToTheDefaultNamespace() throws Exception {
+        assertEquals("0", SocketParser.encode(new SocketPacket(SocketPacket.CONNECT)));
+    }
+
+    @Test
+    public void encodesNamespaceIdAndData() throws Exception {
+        JSONArray args = new JSONArray().put("chat").put(1);
+        assertEquals("2[\"chat\",1]", SocketParser.encode(packet(SocketPacket.EVENT, "/", -1, args)));
+        assertEquals("27[\"chat\",1]", SocketParser.encode(packet(SocketPacket.EVENT, "/", 7, args)));
+        assertEquals("2/admin,[\"chat\",1]", SocketParser.encode(packet(SocketPacket.EVENT, "/admin", -1, args)));
+        assertEquals("2/admin,7[\"chat\",1]", SocketParser.encode(packet(SocketPacket.EVENT, "/admin", 7, args)));
+        assertEquals("0/admin", SocketParser.encode(packet(SocketPacket.CONNECT, "/admin", -1, null)));
+        assertEquals("3/admin,12", SocketParser.encode(packet(SocketPacket.ACK, "/admin", 12, null)));
+    }
+
+    @Test
+    public void encodesAttachmentCount() throws Exception {
+        SocketPacket packet = packet(SocketPacket.BINARY_EVENT, "/admin", 3, new JSONArray().put("file"));
+        packet.attachments = 2;
+        assertEquals("52-/admin,3[\"file\"]", SocketParser.encode(packet));
+    }
+
+    @Test
+    public void decodesNamespaceIdAndData() throws Exception {
+        SocketPacket packet = SocketParser.decode("2/admin,7[\"chat\",1]");
+        assertEquals(SocketPacket.EVENT, packet.type);
+        assertEquals("/admin", packet.nsp);
+        assertEquals(7, packet.id);
+        JSONArray args = (JSONArray) packet.data;
+        assertEquals("chat", args.getString(0));
+        assertEquals(1, args.getInt(1));
+
+        packet = SocketParser.decode("2[\"chat\"]");
+        assertEquals("/", packet.nsp);
+        assertEquals(-1, packet.id);
+
+        packet = SocketParser.decode("312[]");
+        assertEquals(SocketPacket.ACK, packet.type);
+        assertEquals(12, packet.id);
+        assertEquals(0, ((JSONArray) packet.data).length());
+
+        packet = SocketParser.decode("2/admin,[\"chat\"]");
+        assertEquals("/admin", packet.nsp);
+        assertEquals(-1, packet.id);
+    }
+
+    @Test
+    public void decodesPacketsWithoutData() throws Exception {
+        SocketPacket packet = SocketParser.decode("0");
+        assertEquals(SocketPacket.CONNECT, packet.type);
+        assertEquals("/", packet.nsp);
+        assertNull(packet.data);
+
+        packet = SocketParser.decode("1/admin");
+        assertEquals(SocketPacket.DISCONNECT, packet.type);
+        assertEquals("/admin", packet.nsp);
+        assertNull(packet.data);
+
+        packet = SocketParser.decode("0/admin,");
+        assertEquals("/admin", packet.nsp);
+        assertNull(packet.data);
+    }
+
+    @Test
+    public void decodesConnectError() throws Exception {
+        SocketPacket packet = SocketParser.decode("4/admin,{\"message\":\"denied\"}");
+        assertEquals(SocketPacket.ERROR, packet.type);
+        assertEquals("denied", ((JSONObject) packet.data).getString("message"));
+    }
+
+    @Test
+    public void decodesAttachmentCount() throws Exception {
+        SocketPacket packet = SocketParser.decode("61-/admin,4[{\"_placeholder\":true,\"num\":0}]");
+        assertEquals(SocketPacket.BINARY_ACK, packet.type);
+        assertEquals(1, packet.attachments);
+        assertEquals("/admin", packet.nsp);
+        assertEquals(4, packet.id);
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        String[] encoded = {
+                "0", "0/admin", "1/admin", "2[\"a\"]", "2/admin,3[\"a\",{\"b\":[1,2]}]", "35[null]",
+                "3/admin,5[\"ok\"]", "51-[\"a\",{\"_placeholder\":true,\"num\":0}]"
+        };
+        for (String data : encoded) {
+            assertEquals(data, SocketParser.encode(SocketParser.decode(data)));
+        }
+    }
+
+    @Test
+    public void rejectsMalformedPackets() throws Exception {
+        String[] malformed = {
+                "", "7", "x", "/", "2[", "2/admin,1{", "5[\"a\"]", "5-[\"a\"]", "5x-[\"a\"]",
+                // ack ids and attachment counts are ASCII digits only
+                "2\u0663[\"a\"]", "2/admin,\u0663[\"a\"]", "5\u0661-[\"a\"]", "5+1-[\"a\"]",
+                // an ack id beyond int
+                "22147483648[\"a\"]", "29999999999[\"a\"]",
+                // anything after the JSON value
+                "2[\"a\"]x", "2[\"a\"][\"b\"]", "2/admin,1[\"a\"]}"
+        };
+        for (String data : malformed) {
+            assertEquals(data, SocketPacket.ERROR, SocketParser.decode(data).type);
+        }
+    }
+
+    @Test
+    public void acceptsTheLargestAckId() throws Exception {
+        SocketPacket packet = SocketParser.decode("2/admin,2147483647[\"a\"] ");
+        assertEquals(SocketPacket.EVENT, packet.type);
+        assertEquals(Integer.MAX_VALUE, packet.id);
+    }
+
+    @Test
+    public void rejectsTrailingGarbageOfDeferredEvents() throws Exception {
+        SocketPacket packet = SocketParser.decode("2[\"a\",1]x", true);
+        assertEquals("a", packet.event);
+        assertFalse(SocketParser.decodeData(packet));
+    }
+}
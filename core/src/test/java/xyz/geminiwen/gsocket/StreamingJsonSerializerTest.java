@@ -0,0 +1,83 @@
+package xyz.geminiwen.gsocket;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class StreamingJsonSerializerTest {
+
+    private final StreamingJsonSerializer mSerializer = StreamingJsonSerializer.INSTANCE;
+
+    @Test
+    public void roundTripsValues() throws Exception {
+        JSONObject value = new JSONObject()
+                .put("name", "caf\u00e9 \"quoted\"\n\\")
+                .put("list", new JSONArray().put(1).put(2.5).put(true).put(false).put(JSONObject.NULL))
+                .put("big", 1L << 40)
+                .put("nested", new JSONObject().put("empty", new JSONArray()).put("obj", new JSONObject()));
+
+        Object encoded = mSerializer.encode(value);
+        JSONObject decoded = (JSONObject) mSerializer.decode(ByteString.encodeUtf8((String) encoded));
+
+        assertEquals("caf\u00e9 \"quoted\"\n\\", decoded.getString("name"));
+        assertEquals("[1,2.5,true,false,null]", decoded.getJSONArray("list").toString());
+        assertEquals(1L << 40, decoded.get("big"));
+        assertEquals(0, decoded.getJSONObject("nested").getJSONArray("empty").length());
+        assertEquals(0, decoded.getJSONObject("nested").getJSONObject("obj").length());
+    }
+
+    @Test
+    public void decodesEscapesAndWhitespace() throws Exception {
+        Object decoded = mSerializer.decode(ByteString.encodeUtf8(
+                " { \"s\" : \"\\u20ac\\t\\/\" , \"n\" : [ -1 , 1e2 ] } "));
+        JSONObject object = (JSONObject) decoded;
+        assertEquals("\u20ac\t/", object.getString("s"));
+        assertEquals(-1, object.getJSONArray("n").get(0));
+        assertEquals(100.0, object.getJSONArray("n").getDouble(1), 0);
+    }
+
+    @Test
+    public void decodesTextFramesLikeJsonSerializer() throws Exception {
+        assertEquals("[1,\"a\"]", mSerializer.decode("[1,\"a\"]").toString());
+    }
+
+    @Test
+    public void rejectsMalformedJson() throws Exception {
+        String[] malformed = {"", "{\"a\":", "[1 2]", "{1:2}", "\"open", "[1] x", "tru", "\"\\uzzzz\""};
+        for (String json : malformed) {
+            try {
+                mSerializer.decode(ByteString.encodeUtf8(json));
+                fail(json);
+            } catch (EngineIOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsNestingDeeperThan256() throws Exception {
+        mSerializer.decode(ByteString.encodeUtf8(nested(256)));
+        try {
+            mSerializer.decode(ByteString.encodeUtf8(nested(257)));
+            fail();
+        } catch (EngineIOException expected) {
+        }
+    }
+
+    /**
+     * Returns arrays nested {@code depth} levels below the top-level array.
+     */
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i <= depth; i++) {
+            json.append('[');
+        }
+        for (int i = 0; i <= depth; i++) {
+            json.append(']');
+        }
+        return json.toString();
+    }
+}
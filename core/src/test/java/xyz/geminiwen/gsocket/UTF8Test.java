@@ -0,0 +1,136 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class UTF8Test {
+
+    private static String bytes(int... values) {
+        StringBuilder builder = new StringBuilder();
+        for (int value : values) {
+            builder.append((char) value);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void encodesOneToFourBytes() throws Exception {
+        assertEquals(bytes(0x41), UTF8.encode("A"));
+        assertEquals(bytes(0xC3, 0xA9), UTF8.encode("\u00e9"));
+        assertEquals(bytes(0xE2, 0x82, 0xAC), UTF8.encode("\u20ac"));
+        assertEquals(bytes(0xF0, 0x9F, 0x98, 0x80), UTF8.encode("\ud83d\ude00"));
+    }
+
+    @Test
+    public void encodesBoundaries() throws Exception {
+        assertEquals(bytes(0x7F), UTF8.encode("\u007f"));
+        assertEquals(bytes(0xC2, 0x80), UTF8.encode("\u0080"));
+        assertEquals(bytes(0xDF, 0xBF), UTF8.encode("\u07ff"));
+        assertEquals(bytes(0xE0, 0xA0, 0x80), UTF8.encode("\u0800"));
+        assertEquals(bytes(0xEF, 0xBF, 0xBF), UTF8.encode("\uffff"));
+        assertEquals(bytes(0xF0, 0x90, 0x80, 0x80), UTF8.encode(new String(Character.toChars(0x10000))));
+    }
+
+    @Test
+    public void encodesHighestCodePointWithThreeBitLeadMask() throws Exception {
+        // the lead byte of a 4-byte sequence carries 3 bits of the code point
+        assertEquals(bytes(0xF4, 0x8F, 0xBF, 0xBF), UTF8.encode(new String(Character.toChars(0x10FFFF))));
+    }
+
+    @Test
+    public void roundTrips() throws Exception {
+        String text = "a\u00e9\u20ac\ud83d\ude00\u0000\u07ff\u0800\ud800\udc00\udbff\udfff";
+        assertEquals(text, UTF8.decode(UTF8.encode(text)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        UTF8.encode(text, buffer);
+        buffer.flip();
+        assertEquals(UTF8.encode(text).length(), buffer.remaining());
+        assertEquals(text, UTF8.decode(buffer));
+    }
+
+    @Test
+    public void encodedLengthMatchesEncoding() throws Exception {
+        String text = "A\u00e9\u20ac\ud83d\ude00";
+        assertEquals(UTF8.encode(text).length(), UTF8.encodedLength(text));
+        // a lone surrogate counts as U+FFFD
+        assertEquals(3, UTF8.encodedLength("\ud800"));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsLoneHighSurrogate() throws Exception {
+        UTF8.encode("a\ud800b");
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsLoneLowSurrogate() throws Exception {
+        UTF8.encode("\udc00");
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsEncodedSurrogate() throws Exception {
+        UTF8.decode(bytes(0xED, 0xA0, 0x80));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsStrayContinuationByte() throws Exception {
+        UTF8.decode(bytes(0x80));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsInvalidLeadByte() throws Exception {
+        UTF8.decode(bytes(0xF8, 0x80, 0x80, 0x80, 0x80));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsMissingContinuationByte() throws Exception {
+        UTF8.decode(bytes(0xE2, 0x41, 0xAC));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsTruncatedSequence() throws Exception {
+        UTF8.decode(bytes(0xF0, 0x9F, 0x98));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsOverlongEncoding() throws Exception {
+        UTF8.decode(bytes(0xC0, 0xAF));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void rejectsCodePointAboveUnicode() throws Exception {
+        UTF8.decode(bytes(0xF4, 0x90, 0x80, 0x80));
+    }
+
+    @Test
+    public void decoderAcceptsSequencesSplitAcrossChunks() throws Exception {
+        String encoded = UTF8.encode("\u20ac\ud83d\ude00");
+        UTF8.Decoder decoder = new UTF8.Decoder();
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i++) {
+            decoder.decode(encoded.substring(i, i + 1), out);
+        }
+        decoder.finish();
+        assertEquals("\u20ac\ud83d\ude00", out.toString());
+    }
+
+    @Test
+    public void decoderReportsTruncationOnFinish() throws Exception {
+        UTF8.Decoder decoder = new UTF8.Decoder();
+        StringBuilder out = new StringBuilder();
+        decoder.decode(bytes(0x41, 0xE2, 0x82), out);
+        assertEquals("A", out.toString());
+        try {
+            decoder.finish();
+            fail();
+        } catch (UTF8Exception expected) {
+        }
+        // usable again after the error
+        decoder.decode(bytes(0xC3, 0xA9), out);
+        decoder.finish();
+        assertEquals("A\u00e9", out.toString());
+    }
+}
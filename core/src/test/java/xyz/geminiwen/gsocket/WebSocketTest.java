@@ -0,0 +1,353 @@
+package xyz.geminiwen.gsocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import rx.Subscription;
+import rx.functions.Action1;
+
+import static org.junit.Assert.*;
+
+public class WebSocketTest {
+
+    private final MockWebServer mServer = new MockWebServer();
+    // released to let the server accept the websocket
+    private final CountDownLatch mAccept = new CountDownLatch(1);
+    // text frames the server received
+    private final BlockingQueue<String> mReceived = new LinkedBlockingQueue<>();
+    private final AtomicInteger mConnections = new AtomicInteger();
+    // text frames the server sends after each handshake
+    private final List<String> mGreeting = new CopyOnWriteArrayList<>();
+    private volatile long mPingInterval = 25000;
+    private volatile long mPingTimeout = 20000;
+    private volatile boolean mAnswerPings = true;
+    private WebSocket mSocket;
+    private Subscription mSubscription;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                mAccept.await();
+                mConnections.incrementAndGet();
+                return new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+                    @Override
+                    public void onOpen(okhttp3.WebSocket webSocket, Response response) {
+                        webSocket.send("0{\"sid\":\"s" + mConnections.get() + "\",\"upgrades\":[],"
+                                + "\"pingInterval\":" + mPingInterval
+                                + ",\"pingTimeout\":" + mPingTimeout + "}");
+                        for (String text : mGreeting) {
+                            webSocket.send(text);
+                        }
+                    }
+
+                    @Override
+                    public void onMessage(okhttp3.WebSocket webSocket, String text) {
+                        if (text.startsWith("2")) {
+                            if (mAnswerPings) {
+                                webSocket.send("3" + text.substring(1));
+                            }
+                        }
+                        mReceived.add(text);
+                    }
+
+                    @Override
+                    public void onClosing(okhttp3.WebSocket webSocket, int code, String reason) {
+                        webSocket.close(1000, null);
+                    }
+                });
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mAccept.countDown();
+        if (mSubscription != null) {
+            mSubscription.unsubscribe();
+        }
+        if (mSocket != null) {
+            mSocket.close();
+        }
+    }
+
+    private Options options() {
+        Options options = new Options();
+        // okhttp runs each websocket as a call, and only a few calls at a time per host
+        options.httpClient = new OkHttpClient();
+        options.host = mServer.getHostName();
+        options.port = mServer.getPort();
+        options.scheme = "http";
+        options.path = "engine.io/";
+        return options;
+    }
+
+    private WebSocket open(Options options) {
+        WebSocket socket = new WebSocket(options);
+        mSocket = socket;
+        mSubscription = socket.onPacket().subscribe(new Action1<Packet>() {
+            @Override
+            public void call(Packet packet) {
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+            }
+        });
+        return socket;
+    }
+
+    private static Packet message(String data) {
+        return new Packet<>(Packet.MESSAGE, data);
+    }
+
+    /**
+     * The next {@code count} messages the server receives, skipping pings.
+     */
+    private List<String> receiveMessages(int count) throws InterruptedException {
+        List<String> messages = new ArrayList<>();
+        while (messages.size() < count) {
+            String text = mReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull("received " + messages, text);
+            if (text.startsWith("4")) {
+                messages.add(text);
+            }
+        }
+        return messages;
+    }
+
+    @Test
+    public void holdsPacketsSentWhileOpening() throws Exception {
+        WebSocket socket = open(options());
+        socket.send(message("a"));
+        socket.send(message("b"), message("c"));
+        mAccept.countDown();
+
+        assertEquals(list("4a", "4b", "4c"), receiveMessages(3));
+    }
+
+    @Test
+    public void drainsInBatches() throws Exception {
+        Options options = options();
+        options.sendBatchSize = 3;
+        WebSocket socket = open(options);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            socket.send(message(String.valueOf(i)));
+            expected.add("4" + i);
+        }
+        mAccept.countDown();
+
+        assertEquals(expected, receiveMessages(100));
+    }
+
+    @Test
+    public void sendsRightAwayOnceOpen() throws Exception {
+        WebSocket socket = open(options());
+        mAccept.countDown();
+        socket.send(message("first"));
+        assertEquals(list("4first"), receiveMessages(1));
+        socket.send(message("second"));
+        assertEquals(list("4second"), receiveMessages(1));
+    }
+
+    @Test
+    public void rejectsSendsBeyondCapacity() throws Exception {
+        Options options = options();
+        options.sendQueueCapacity = 2;
+        WebSocket socket = open(options);
+        socket.send(message("a"), message("b"));
+        try {
+            socket.send(message("c"));
+            fail();
+        } catch (EngineIOException expected) {
+        }
+        mAccept.countDown();
+
+        assertEquals(list("4a", "4b"), receiveMessages(2));
+    }
+
+    @Test
+    public void rejectsSendsBeforeOpening() throws Exception {
+        WebSocket socket = new WebSocket(options());
+        try {
+            socket.send(message("a"));
+            fail();
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    @Test
+    public void reportsWritability() throws Exception {
+        Options options = options();
+        options.sendQueueCapacity = 2;
+        WebSocket socket = open(options);
+        final BlockingQueue<Boolean> writable = new LinkedBlockingQueue<>();
+        socket.onWritableChanged().subscribe(new Action1<Boolean>() {
+            @Override
+            public void call(Boolean value) {
+                writable.add(value);
+            }
+        });
+        assertEquals(Boolean.TRUE, writable.poll(5, TimeUnit.SECONDS));
+
+        socket.send(message("a"), message("b"));
+        assertEquals(Boolean.FALSE, writable.poll(5, TimeUnit.SECONDS));
+        assertFalse(socket.awaitWritable().await(50, TimeUnit.MILLISECONDS));
+
+        mAccept.countDown();
+        assertEquals(Boolean.TRUE, writable.poll(5, TimeUnit.SECONDS));
+        assertTrue(socket.awaitWritable().await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void pingsEveryInterval() throws Exception {
+        mPingInterval = 50;
+        mPingTimeout = 1000;
+        open(options());
+        mAccept.countDown();
+
+        int pings = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pings < 5 && System.currentTimeMillis() < deadline) {
+            String text = mReceived.poll(100, TimeUnit.MILLISECONDS);
+            if (text != null && text.startsWith("2")) {
+                pings++;
+            }
+        }
+        assertEquals(5, pings);
+        // answered, so the connection stays up
+        assertEquals(1, mConnections.get());
+    }
+
+    @Test
+    public void reconnectsWhenPongsStop() throws Exception {
+        mPingInterval = 50;
+        mPingTimeout = 100;
+        mAnswerPings = false;
+        Options options = options();
+        options.reconnectionDelay = 10;
+        options.reconnectionDelayMax = 10;
+        open(options);
+        mAccept.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mConnections.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, mConnections.get());
+    }
+
+    @Test
+    public void forgetsOffsetsOfAClosedSession() throws Exception {
+        Options options = options();
+        // "4<offset>:<payload>"
+        options.resumeOffsetExtractor = new OffsetExtractor() {
+            @Override
+            public long offsetOf(Packet packet) {
+                String data = (String) packet.data;
+                return Long.parseLong(data.substring(0, data.indexOf(':')));
+            }
+        };
+        mGreeting.add("41:a");
+        mGreeting.add("42:b");
+        WebSocket socket = new WebSocket(options);
+        mSocket = socket;
+        final BlockingQueue<Object> messages = new LinkedBlockingQueue<>();
+        mSubscription = socket.onPacket().subscribe(new Action1<Packet>() {
+            @Override
+            public void call(Packet packet) {
+                messages.add(packet.data);
+            }
+        });
+        mAccept.countDown();
+
+        assertEquals("1:a", messages.poll(5, TimeUnit.SECONDS));
+        assertEquals("2:b", messages.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, socket.getLastOffset());
+
+        socket.close();
+        assertEquals(-1, socket.getLastOffset());
+
+        // a new session whose offsets start over is not mistaken for a replay
+        socket.open();
+        assertEquals("1:a", messages.poll(5, TimeUnit.SECONDS));
+        assertEquals("2:b", messages.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, mConnections.get());
+    }
+
+    @Test
+    public void reopensAfterCloseOnOpenOrAFreshSubscription() throws Exception {
+        WebSocket socket = open(options());
+        mAccept.countDown();
+        awaitConnections(1);
+        awaitOpen(socket);
+
+        socket.close();
+        // joins the stream the first subscriber still holds, which stays closed
+        Subscription second = socket.onPacket().subscribe(new Action1<Packet>() {
+            @Override
+            public void call(Packet packet) {
+            }
+        });
+        Thread.sleep(200);
+        assertEquals(1, mConnections.get());
+        socket.open();
+        awaitConnections(2);
+        awaitOpen(socket);
+
+        socket.close();
+        second.unsubscribe();
+        mSubscription.unsubscribe();
+        // nobody is left, so subscribing starts the stream and the connection again
+        mSubscription = socket.onPacket().subscribe(new Action1<Packet>() {
+            @Override
+            public void call(Packet packet) {
+            }
+        });
+        awaitConnections(3);
+    }
+
+    private void awaitConnections(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mConnections.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, mConnections.get());
+    }
+
+    private static void awaitOpen(WebSocket socket) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!socket.isOpen() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(socket.isOpen());
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
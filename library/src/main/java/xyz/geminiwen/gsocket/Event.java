@@ -1,10 +0,0 @@
-package xyz.geminiwen.gsocket;
-
-/**
- * Created by geminiwen on 13/12/2016.
- */
-
-public class Event {
-    public int eventType;
-    public Object message;
-}
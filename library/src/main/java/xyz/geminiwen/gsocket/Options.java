@@ -1,15 +0,0 @@
-package xyz.geminiwen.gsocket;
-
-import okhttp3.OkHttpClient;
-
-/**
- * Created by geminiwen on 2016/12/3.
- */
-
-public class Options {
-    public OkHttpClient httpClient;
-    public String host;
-    public String scheme;
-    public String path;
-    public int port;
-}
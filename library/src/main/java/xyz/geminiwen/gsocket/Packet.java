@@ -1,35 +0,0 @@
-package xyz.geminiwen.gsocket;
-
-/**
- * Created by geminiwen on 2016/12/3.
- */
-
-public class Packet<T> {
-
-    static final public String OPEN = "open";
-    static final public String CLOSE = "close";
-    static final public String PING = "ping";
-    static final public String PONG = "pong";
-    static final public String UPGRADE = "upgrade";
-    static final public String MESSAGE = "message";
-    static final public String NOOP = "noop";
-    static final public String ERROR = "error";
-
-    public String type;
-    public T data;
-
-
-    public Packet(String type) {
-        this(type, null);
-    }
-
-    public Packet(String type, T data) {
-        this.type = type;
-        this.data = data;
-    }
-
-    @Override
-    public String toString() {
-        return this.type + " : " + this.data;
-    }
-}
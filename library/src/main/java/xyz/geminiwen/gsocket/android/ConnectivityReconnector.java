@@ -0,0 +1,54 @@
+package xyz.geminiwen.gsocket.android;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+
+import xyz.geminiwen.gsocket.WebSocket;
+
+/**
+ * Retries a dropped connection as soon as a network becomes available, instead of waiting
+ * out the reconnection backoff. Needs the ACCESS_NETWORK_STATE permission, which this
+ * module's manifest declares.
+ */
+public final class ConnectivityReconnector {
+
+    private final ConnectivityManager mConnectivityManager;
+    private final WebSocket mSocket;
+    private boolean mStarted;
+
+    private final ConnectivityManager.NetworkCallback mCallback =
+            new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    mSocket.reconnectNow();
+                }
+            };
+
+    public ConnectivityReconnector(Context context, WebSocket socket) {
+        mConnectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mSocket = socket;
+    }
+
+    public synchronized void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        mConnectivityManager.registerNetworkCallback(request, mCallback);
+    }
+
+    public synchronized void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        mConnectivityManager.unregisterNetworkCallback(mCallback);
+    }
+}
@@ -0,0 +1,32 @@
+package xyz.geminiwen.gsocket.android;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * A {@link Scheduler} for the Android main thread, to {@code observeOn} packet and event
+ * streams whose subscribers touch views. Decoding should stay off it, see
+ * {@link xyz.geminiwen.gsocket.Options#deserializeScheduler}.
+ */
+public final class MainThread {
+
+    private static final Scheduler SCHEDULER = Schedulers.from(new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    });
+
+    private MainThread() {}
+
+    public static Scheduler scheduler() {
+        return SCHEDULER;
+    }
+}
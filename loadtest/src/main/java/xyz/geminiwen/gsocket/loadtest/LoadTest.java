@@ -0,0 +1,399 @@
+package xyz.geminiwen.gsocket.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import xyz.geminiwen.gsocket.IO;
+import xyz.geminiwen.gsocket.LatencyHistogram;
+import xyz.geminiwen.gsocket.Metrics;
+import xyz.geminiwen.gsocket.Options;
+import xyz.geminiwen.gsocket.Packet;
+import xyz.geminiwen.gsocket.WebSocket;
+
+/**
+ * Drives many {@link WebSocket}s against an engine.io server, by default an in-process
+ * {@link StandInServer}, and reports every few seconds how far it got: message throughput,
+ * echo latency percentiles, reconnects, and the threads and heap each connection costs.
+ * Run it for hours to soak-test the library.
+ */
+public final class LoadTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final Config mConfig;
+    private final OkHttpClient mClient;
+    private final Executor mDecodeExecutor;
+    private final Metrics mMetrics = new Metrics();
+    private final LatencyHistogram mTotalLatency = new LatencyHistogram();
+    private volatile LatencyHistogram mIntervalLatency = new LatencyHistogram();
+    private final AtomicInteger mConnected = new AtomicInteger();
+
+    // owned by the pacer thread until it is shut down; the ramp thread hands new clients over
+    private final List<Client> mClients = new ArrayList<>();
+    private final Queue<Client> mNewClients = new ConcurrentLinkedQueue<>();
+    private final String mPadding;
+    private final ScheduledExecutorService mRamp = newScheduler("loadtest-ramp");
+    private final ScheduledExecutorService mPacer = newScheduler("loadtest-pacer");
+
+    private LoadTest(Config config) {
+        mConfig = config;
+        // okhttp runs each websocket reader as a dispatcher call, and by default allows only
+        // five of those per host
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        mClient = IO.defaultHttpClient().newBuilder().dispatcher(dispatcher).build();
+        mDecodeExecutor = decodeExecutor(config.decode);
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < config.size) {
+            padding.append('x');
+        }
+        mPadding = padding.toString();
+    }
+
+    private void run(String host, int port, StandInServer server) throws InterruptedException {
+        System.gc();
+        long baseHeap = liveHeap();
+        int baseThreads = threadCount();
+        long start = System.nanoTime();
+        startRamp(host, port, start);
+        startPacer(start);
+
+        System.out.println(String.format(Locale.US,
+                "%d clients, %.1f msg/s each, %d chars, ramp %ds, %ds, %s decoding%s",
+                mConfig.clients, mConfig.rate, mConfig.size, mConfig.rampSeconds, mConfig.durationSeconds,
+                mConfig.decode,
+                server != null ? " (threads and heap include the in-process server)" : ""));
+
+        long reportNanos = TimeUnit.SECONDS.toNanos(mConfig.reportSeconds);
+        long end = start + TimeUnit.SECONDS.toNanos(mConfig.durationSeconds);
+        long lastReport = start;
+        long lastSent = 0;
+        long lastReceived = 0;
+        int peakThreads = baseThreads;
+        while (System.nanoTime() < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(reportNanos, end - System.nanoTime()));
+            long now = System.nanoTime();
+            LatencyHistogram latency = mIntervalLatency;
+            mIntervalLatency = new LatencyHistogram();
+            long sent = mMetrics.getMessagesSent();
+            long received = mMetrics.getMessagesReceived();
+            double seconds = (now - lastReport) / 1e9;
+            int threads = threadCount();
+            peakThreads = Math.max(peakThreads, threads);
+            int connected = Math.max(1, mConnected.get());
+            System.out.println(String.format(Locale.US,
+                    "[%5ds] open %d/%d | sent %.0f/s recv %.0f/s | latency %s | reconnects %d errors %d"
+                            + " | threads %d (%.2f/conn) heap %.1f MiB (%.1f KiB/conn)",
+                    TimeUnit.NANOSECONDS.toSeconds(now - start), mConnected.get(), mConfig.clients,
+                    (sent - lastSent) / seconds, (received - lastReceived) / seconds, percentiles(latency),
+                    mMetrics.getReconnects(), mMetrics.getErrors(),
+                    threads, (double) (threads - baseThreads) / connected,
+                    liveHeap() / 1048576.0, (liveHeap() - baseHeap) / 1024.0 / connected));
+            lastReport = now;
+            lastSent = sent;
+            lastReceived = received;
+        }
+
+        mRamp.shutdown();
+        mPacer.shutdown();
+        mRamp.awaitTermination(10, TimeUnit.SECONDS);
+        mPacer.awaitTermination(10, TimeUnit.SECONDS);
+        drainNewClients();
+        // let echoes still in flight arrive before the totals are taken
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mMetrics.getMessagesReceived() < mMetrics.getMessagesSent() && System.nanoTime() < drainUntil) {
+            Thread.sleep(50);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int connected = Math.max(1, mConnected.get());
+        System.gc();
+        long heap = liveHeap();
+        System.out.println(String.format(Locale.US,
+                "total: sent %d recv %d in %.0fs (%.0f/s) | latency %s | ping rtt ms %s | reconnects %d"
+                        + " errors %d | peak threads %d (%.2f/conn) | heap after gc %.1f KiB/conn",
+                mMetrics.getMessagesSent(), mMetrics.getMessagesReceived(), seconds,
+                mMetrics.getMessagesReceived() / seconds, percentiles(mTotalLatency),
+                mMetrics.getPingRttMillis(), mMetrics.getReconnects(), mMetrics.getErrors(),
+                peakThreads, (double) (peakThreads - baseThreads) / connected,
+                (heap - baseHeap) / 1024.0 / connected));
+
+        for (Client client : mClients) {
+            client.mSocket.close();
+        }
+    }
+
+    /**
+     * Opens the clients evenly over the ramp-up. Opening one takes a while, so this runs apart
+     * from the pacer to keep the message rate of the clients already open steady.
+     */
+    private void startRamp(final String host, final int port, final long start) {
+        mRamp.scheduleWithFixedDelay(new Runnable() {
+            private int mOpened;
+
+            @Override
+            public void run() {
+                long elapsed = System.nanoTime() - start;
+                long ramp = TimeUnit.SECONDS.toNanos(mConfig.rampSeconds);
+                int target = elapsed >= ramp
+                        ? mConfig.clients
+                        : (int) Math.max(1, (long) mConfig.clients * elapsed / ramp);
+                for (; mOpened < target; mOpened++) {
+                    mNewClients.add(new Client(host, port));
+                }
+                if (mOpened == mConfig.clients) {
+                    mRamp.shutdown();
+                }
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gives every client its share of messages for the time since the last tick.
+     */
+    private void startPacer(final long start) {
+        mPacer.scheduleWithFixedDelay(new Runnable() {
+            private long mLastTick = start;
+
+            @Override
+            public void run() {
+                drainNewClients();
+                long now = System.nanoTime();
+                double credit = mConfig.rate * (now - mLastTick) / 1e9;
+                mLastTick = now;
+                for (Client client : mClients) {
+                    client.tick(credit);
+                }
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void drainNewClients() {
+        Client client;
+        while ((client = mNewClients.poll()) != null) {
+            mClients.add(client);
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler(final String name) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static Executor decodeExecutor(String decode) {
+        if (decode.equals("pool")) {
+            return IO.decodeExecutor();
+        }
+        if (decode.equals("virtual")) {
+            Executor executor = IO.newVirtualThreadExecutor();
+            if (executor == null) {
+                throw new IllegalArgumentException("--decode virtual needs a JVM with virtual threads");
+            }
+            return executor;
+        }
+        return null;
+    }
+
+    private static String percentiles(LatencyHistogram micros) {
+        return String.format(Locale.US, "ms p50 %.1f p90 %.1f p99 %.1f p99.9 %.1f max %.1f",
+                micros.percentile(50) / 1000.0, micros.percentile(90) / 1000.0,
+                micros.percentile(99) / 1000.0, micros.percentile(99.9) / 1000.0, micros.max() / 1000.0);
+    }
+
+    private static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * Heap in use right after the last collection, so reading it does not force one.
+     */
+    private static long liveHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private final class Client implements WebSocket.PacketListener {
+
+        final WebSocket mSocket;
+        private double mCredit;
+        private boolean mOpened;
+
+        Client(String host, int port) {
+            Options options = new Options();
+            options.httpClient = mClient;
+            options.scheme = "http";
+            options.host = host;
+            options.port = port;
+            options.path = "engine.io/";
+            options.metrics = mMetrics;
+            options.decodeExecutor = mDecodeExecutor;
+            mSocket = new WebSocket(options);
+            mSocket.addPacketListener(this);
+            mSocket.open();
+        }
+
+        void tick(double credit) {
+            mCredit += credit;
+            while (mCredit >= 1) {
+                mCredit--;
+                String payload = System.nanoTime() + ":" + mPadding;
+                mSocket.send(new Packet<>(Packet.MESSAGE, payload));
+            }
+        }
+
+        @Override
+        public void onPacket(Packet packet) {
+            if (packet.type == Packet.OPEN) {
+                synchronized (this) {
+                    if (!mOpened) {
+                        mOpened = true;
+                        mConnected.incrementAndGet();
+                    }
+                }
+            } else if (packet.type == Packet.MESSAGE && packet.data instanceof String) {
+                String data = (String) packet.data;
+                int colon = data.indexOf(':');
+                if (colon > 0) {
+                    long micros = (System.nanoTime() - Long.parseLong(data.substring(0, colon))) / 1000;
+                    mIntervalLatency.record(micros);
+                    mTotalLatency.record(micros);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+    }
+
+    private static final class Config {
+        int clients = 1000;
+        double rate = 1;
+        int size = 64;
+        long durationSeconds = 60;
+        long rampSeconds = 10;
+        long reportSeconds = 5;
+        long pingInterval = 25000;
+        String target;
+        String decode = "inline";
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--clients":
+                        config.clients = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        config.rate = Double.parseDouble(value);
+                        break;
+                    case "--size":
+                        config.size = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        config.durationSeconds = Long.parseLong(value);
+                        break;
+                    case "--ramp":
+                        config.rampSeconds = Long.parseLong(value);
+                        break;
+                    case "--report":
+                        config.reportSeconds = Long.parseLong(value);
+                        break;
+                    case "--ping-interval":
+                        config.pingInterval = Long.parseLong(value);
+                        break;
+                    case "--decode":
+                        if (!value.equals("inline") && !value.equals("pool") && !value.equals("virtual")) {
+                            throw new IllegalArgumentException("--decode must be inline, pool or virtual");
+                        }
+                        config.decode = value;
+                        break;
+                    case "--target":
+                        if (value.lastIndexOf(':') <= 0) {
+                            throw new IllegalArgumentException("--target must be host:port");
+                        }
+                        config.target = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("missing value for " + args[args.length - 1]);
+            }
+            return config;
+        }
+    }
+
+    private static final String USAGE = "usage: LoadTest [--clients 1000] [--rate 1] [--size 64]"
+            + " [--duration 60] [--ramp 10] [--report 5] [--ping-interval 25000] [--target host:port]"
+            + " [--decode inline|pool|virtual]\n"
+            + "  rate is messages per second per client, size the payload length in chars and the"
+            + " times seconds, except the ping interval the stand-in server asks for in ms;\n"
+            + "  --target drives a server already running, e.g. StandInServer in another JVM;\n"
+            + "  --decode picks Options.decodeExecutor: okhttp's reader threads, IO.decodeExecutor()"
+            + " or IO.newVirtualThreadExecutor()";
+
+    public static void main(String[] args) throws Exception {
+        Config config;
+        LoadTest test;
+        try {
+            config = Config.parse(args);
+            test = new LoadTest(config);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        StandInServer server = null;
+        String host;
+        int port;
+        if (config.target != null) {
+            int colon = config.target.lastIndexOf(':');
+            host = config.target.substring(0, colon);
+            port = Integer.parseInt(config.target.substring(colon + 1));
+        } else {
+            server = new StandInServer(config.pingInterval, 20000);
+            server.start(0);
+            host = server.host();
+            port = server.port();
+        }
+
+        test.run(host, port, server);
+
+        if (server != null) {
+            server.shutdown();
+        }
+        System.exit(0);
+    }
+}
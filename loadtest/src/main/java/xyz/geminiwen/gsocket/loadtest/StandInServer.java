@@ -0,0 +1,160 @@
+package xyz.geminiwen.gsocket.loadtest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+import xyz.geminiwen.gsocket.Packet;
+import xyz.geminiwen.gsocket.Parser;
+import xyz.geminiwen.gsocket.UTF8Exception;
+
+/**
+ * A local engine.io v3 server over websocket, just enough for load tests: every connection
+ * gets a handshake, pings are answered and messages are echoed back.
+ */
+public final class StandInServer {
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final long mPingInterval;
+    private final long mPingTimeout;
+    private final AtomicInteger mSessionIds = new AtomicInteger();
+    private final AtomicInteger mOpenSessions = new AtomicInteger();
+
+    public StandInServer(long pingInterval, long pingTimeout) {
+        mPingInterval = pingInterval;
+        mPingTimeout = pingTimeout;
+    }
+
+    public void start(int port) throws IOException {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().withWebSocketUpgrade(new Session());
+            }
+        });
+        mServer.start(port);
+    }
+
+    public String host() {
+        return mServer.getHostName();
+    }
+
+    public int port() {
+        return mServer.getPort();
+    }
+
+    public int openSessions() {
+        return mOpenSessions.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    private String handshake(String sid) {
+        // the fields the client reads into HandshakeData
+        try {
+            return new JSONObject()
+                    .put("sid", sid)
+                    .put("upgrades", new JSONArray())
+                    .put("pingInterval", mPingInterval)
+                    .put("pingTimeout", mPingTimeout)
+                    .toString();
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void send(WebSocket webSocket, Packet<String> packet) {
+        try {
+            webSocket.send(Parser.encodePacketString(packet));
+        } catch (UTF8Exception e) {
+            webSocket.close(1011, "encode failed");
+        }
+    }
+
+    private final class Session extends WebSocketListener {
+
+        private final AtomicBoolean mOpen = new AtomicBoolean();
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            mOpen.set(true);
+            mOpenSessions.incrementAndGet();
+            String sid = "load-" + mSessionIds.incrementAndGet();
+            send(webSocket, new Packet<>(Packet.OPEN, handshake(sid)));
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            Packet<String> packet = Parser.decodePacket(text);
+            switch (packet.type) {
+                case Packet.PING:
+                    send(webSocket, new Packet<>(Packet.PONG, packet.data));
+                    break;
+                case Packet.MESSAGE:
+                    webSocket.send(text);
+                    break;
+                case Packet.CLOSE:
+                    webSocket.close(1000, null);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            Packet<ByteString> packet = Parser.decodePacket(bytes);
+            if (packet.type == Packet.MESSAGE) {
+                webSocket.send(bytes);
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            ended();
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            ended();
+        }
+
+        private void ended() {
+            if (mOpen.compareAndSet(true, false)) {
+                mOpenSessions.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs the server on its own, so clients in another JVM can be measured without it:
+     * {@code StandInServer [port] [pingIntervalMillis]}.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        long pingInterval = args.length > 1 ? Long.parseLong(args[1]) : 25000;
+        StandInServer server = new StandInServer(pingInterval, 20000);
+        server.start(port);
+        System.out.println("engine.io stand-in listening on " + server.host() + ":" + server.port());
+        Thread.currentThread().join();
+    }
+}